@@ -0,0 +1,148 @@
+package me.nandork.jittree;
+
+import com.sun.hotspot.tools.compiler.CallSite;
+import com.sun.hotspot.tools.compiler.Compilation;
+import com.sun.hotspot.tools.compiler.LogEvent;
+import com.sun.hotspot.tools.compiler.LogGenerator;
+import com.sun.hotspot.tools.compiler.LogParser;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The log every benchmark works on, read into memory so the disk is not
+ * measured.  The compilation logs of the file are repeated scale times to
+ * get larger inputs with the same shape, another file can be given with
+ * -p log=file.  A relative file that isn't found from the working directory
+ * is looked up on the class path, which has the hotspot.log of the project.
+ * With -p generate=size, e.g. 256m, a log of about that size is written by
+ * LogGenerator instead.
+ */
+@State(Scope.Benchmark)
+public class Inputs {
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Param({"hotspot.log"})
+    public String log;
+
+    @Param({"0"})
+    public String generate;
+
+    @Param({"1", "16"})
+    public int scale;
+
+    byte[] bytes;
+    ArrayList<LogEvent> events;
+    List<CallSite> callSites;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        long size = LogGenerator.size(generate);
+        bytes = scale(size > 0 ? generate(size) : read(log), scale);
+        events = LogParser.parse(reader(), false);
+        callSites = new ArrayList<>();
+        for (LogEvent e : events) {
+            if (e instanceof Compilation) {
+                callSites.add(((Compilation) e).getCall());
+            }
+        }
+    }
+
+    static byte[] read(String log) throws IOException {
+        File file = new File(log);
+        if (file.exists() || file.isAbsolute()) {
+            return Files.readAllBytes(file.toPath());
+        }
+        try (InputStream in = Inputs.class.getResourceAsStream("/" + log)) {
+            if (in == null) {
+                throw new FileNotFoundException(log + " is neither in " + new File("").getAbsolutePath()
+                        + " nor on the class path");
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    static byte[] generate(long size) throws IOException {
+        LogGenerator generator = new LogGenerator(0, 5000);
+        generator.setSize(size);
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(size + size / 4, Integer.MAX_VALUE - 8));
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(out, UTF_8))) {
+            generator.write(writer);
+        }
+        return out.toByteArray();
+    }
+
+    public Reader reader() {
+        return new InputStreamReader(new ByteArrayInputStream(bytes), UTF_8);
+    }
+
+    public double megabytes() {
+        return bytes.length / 1e6;
+    }
+
+    /**
+     * Repeats everything from the first compilation log to the end of the
+     * last one, the tty section and the end of the file stay as they are.
+     */
+    static byte[] scale(byte[] log, int scale) {
+        String text = new String(log, UTF_8);
+        int from = text.indexOf("<compilation_log");
+        String end = "</compilation_log>";
+        int to = text.lastIndexOf(end);
+        if (scale == 1 || from < 0 || to < 0) {
+            return log;
+        }
+        to += end.length();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(log.length * scale);
+        byte[] head = text.substring(0, from).getBytes(UTF_8);
+        byte[] body = text.substring(from, to).getBytes(UTF_8);
+        byte[] tail = text.substring(to).getBytes(UTF_8);
+        out.write(head, 0, head.length);
+        for (int i = 0; i < scale; i++) {
+            out.write(body, 0, body.length);
+        }
+        out.write(tail, 0, tail.length);
+        return out.toByteArray();
+    }
+
+    /**
+     * What a benchmark got through, reported by JMH as rates next to the
+     * operations: megabytes/s and events/s.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Throughput {
+        public double megabytes;
+        public long events;
+
+        public void add(Inputs inputs) {
+            megabytes += inputs.megabytes();
+            events += inputs.events.size();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package me.nandork.jittree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+import javax.swing.tree.TreeNode;
+
+/**
+ * Building the JITNodes of every compilation the way JTree does when all
+ * of them are expanded: children and labels are created on first access.
+ */
+public class JITNodeBenchmark {
+
+    @Benchmark
+    public int expandAll(Inputs inputs, Inputs.Throughput throughput) {
+        JITNode root = new JITNode("main::main", inputs.callSites);
+        int nodes = expand(root);
+        throughput.add(inputs);
+        return nodes;
+    }
+
+    private static int expand(TreeNode node) {
+        int nodes = 1;
+        node.toString();
+        for (int i = 0; i < node.getChildCount(); i++) {
+            nodes += expand(node.getChildAt(i));
+        }
+        return nodes;
+    }
+}
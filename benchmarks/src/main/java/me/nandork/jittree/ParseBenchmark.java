@@ -0,0 +1,27 @@
+package me.nandork.jittree;
+
+import com.sun.hotspot.tools.compiler.LogEvent;
+import com.sun.hotspot.tools.compiler.LogParser;
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.util.List;
+
+/**
+ * LogParser.parse from the text of the log to the events sorted by start.
+ */
+public class ParseBenchmark {
+
+    @Benchmark
+    public List<LogEvent> parse(Inputs inputs, Inputs.Throughput throughput) throws Exception {
+        List<LogEvent> events = LogParser.parse(inputs.reader(), false);
+        throughput.add(inputs);
+        return events;
+    }
+
+    @Benchmark
+    public List<LogEvent> parseWithCleanup(Inputs inputs, Inputs.Throughput throughput) throws Exception {
+        List<LogEvent> events = LogParser.parse(inputs.reader(), true);
+        throughput.add(inputs);
+        return events;
+    }
+}
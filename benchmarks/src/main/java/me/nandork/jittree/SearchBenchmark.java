@@ -0,0 +1,40 @@
+package me.nandork.jittree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Indexing the call sites for the search field, and searching them.
+ */
+@State(Scope.Thread)
+public class SearchBenchmark {
+
+    /**
+     * Neither contains the other, so every search starts from the index
+     * instead of narrowing the previous result.
+     */
+    private static final String[] TERMS = {"string", "hashmap"};
+
+    private SearchModel model;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp(Inputs inputs) {
+        model = new SearchModel(inputs.callSites);
+    }
+
+    @Benchmark
+    public Object index(Inputs inputs, Inputs.Throughput throughput) {
+        SearchModel index = new SearchModel(inputs.callSites);
+        throughput.add(inputs);
+        return index;
+    }
+
+    @Benchmark
+    public Object search() throws InterruptedException {
+        return model.search(TERMS[next++ & 1], null);
+    }
+}
@@ -0,0 +1,33 @@
+package me.nandork.jittree;
+
+import com.sun.hotspot.tools.compiler.LogCompilation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * LogCompilation.printStatistics of the parsed events, the output is
+ * formatted but thrown away.
+ */
+@State(Scope.Thread)
+public class StatisticsBenchmark {
+
+    private final PrintStream out = new PrintStream(new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    });
+
+    @Benchmark
+    public void printStatistics(Inputs inputs, Inputs.Throughput throughput) {
+        LogCompilation.printStatistics(inputs.events, out);
+        throughput.add(inputs);
+    }
+}
@@ -25,43 +25,34 @@
 package com.sun.hotspot.tools.compiler;
 
 import java.io.PrintStream;
-import java.util.ArrayList;
+import java.util.AbstractList;
 import java.util.List;
 
+/**
+ * A view of one node of an {@link InlineTree}.  CallSites are created on
+ * demand and two views of the same node are equal.
+ */
 public class CallSite {
 
-    private int bci;
-    private Method method;
-    private int count;
-    private String receiver;
-    private int receiver_count;
-    private String reason;
-    private List<CallSite> calls;
-    private int endNodes;
-    private double timeStamp;
-    private boolean intrinsic;
-
-    public CallSite() {
-    }
+    private final InlineTree tree;
+    private final int node;
 
-    CallSite(int bci, Method m) {
-        this.bci = bci;
-        this.method = m;
+    CallSite(InlineTree tree, int node) {
+        this.tree = tree;
+        this.node = node;
     }
 
-    void add(CallSite site) {
-        if (getCalls() == null) {
-            setCalls(new ArrayList<CallSite>());
-        }
-        getCalls().add(site);
+    public InlineTree getTree() {
+        return tree;
     }
 
-    CallSite last() {
-        return last(-1);
+    public int getNode() {
+        return node;
     }
 
-    CallSite last(int fromEnd) {
-        return getCalls().get(getCalls().size() + fromEnd);
+    public CallSite getParent() {
+        int parent = tree.getParent(node);
+        return parent < 0 ? null : new CallSite(tree, parent);
     }
 
     public String toString() {
@@ -81,6 +72,20 @@ public class CallSite {
         return sb.toString();
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof CallSite)) {
+            return false;
+        }
+        CallSite other = (CallSite) o;
+        return tree == other.tree && node == other.node;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(tree) * 31 + node;
+    }
+
     public void print(PrintStream stream) {
         print(stream, 0);
     }
@@ -125,67 +130,75 @@ public class CallSite {
     }
 
     public int getBci() {
-        return bci;
-    }
-
-    public void setBci(int bci) {
-        this.bci = bci;
+        return tree.getBci(node);
     }
 
     public Method getMethod() {
-        return method;
-    }
-
-    public void setMethod(Method method) {
-        this.method = method;
+        return tree.getMethod(node);
     }
 
     public int getCount() {
-        return count;
+        return tree.getCount(node);
     }
 
-    public void setCount(int count) {
-        this.count = count;
+    /**
+     * The interpreter invocation count of the method when the task was
+     * compiled.
+     */
+    public int getIICount() {
+        return tree.getIICount(node);
     }
 
     public String getReceiver() {
-        return receiver;
-    }
-
-    public void setReceiver(String receiver) {
-        this.receiver = receiver;
+        return tree.getReceiver(node);
     }
 
     public int getReceiverCount() {
-        return receiver_count;
+        return tree.getReceiverCount(node);
     }
 
-    public void setReceiver_count(int receiver_count) {
-        this.receiver_count = receiver_count;
-    }
-
-    public String getReason() {
-        return reason;
-    }
-
-    public void setReason(String reason) {
-        this.reason = reason;
-    }
-
-    public void setIntrinsic(boolean intrinsic) {
-        this.intrinsic = intrinsic;
+    public Reason getReason() {
+        return tree.getReason(node);
     }
 
     public boolean isIntrinsic() {
-        return intrinsic;
+        return tree.isIntrinsic(node);
     }
 
+    /**
+     * Returns the inlined calls, or null if there are none.
+     */
     public List<CallSite> getCalls() {
-        return calls;
-    }
+        final int first = tree.getFirstChild(node);
+        if (first < 0) {
+            return null;
+        }
+        final int size = tree.getChildCount(node);
+        return new AbstractList<CallSite>() {
+            private int index;
+            private int child = first;
+
+            @Override
+            public CallSite get(int i) {
+                if (i < 0 || i >= size) {
+                    throw new IndexOutOfBoundsException(String.valueOf(i));
+                }
+                if (i < index) {
+                    index = 0;
+                    child = first;
+                }
+                while (index < i) {
+                    child = tree.getNextSibling(child);
+                    index++;
+                }
+                return new CallSite(tree, child);
+            }
 
-    public void setCalls(List<CallSite> calls) {
-        this.calls = calls;
+            @Override
+            public int size() {
+                return size;
+            }
+        };
     }
 
     public static boolean isCompat() {
@@ -196,20 +209,12 @@ public class CallSite {
         compat = aCompat;
     }
 
-    void setEndNodes(int n) {
-        endNodes = n;
-    }
-
     public int getEndNodes() {
-        return endNodes;
-    }
-
-    void setTimeStamp(double time) {
-        timeStamp = time;
+        return tree.getEndNodes(node);
     }
 
     public double getTimeStamp() {
-        return timeStamp;
+        return tree.getTimeStamp(node);
     }
 
 }
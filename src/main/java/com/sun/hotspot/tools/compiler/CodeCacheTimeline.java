@@ -0,0 +1,396 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Replays the nmethods of a log and their make_not_entrant events against
+ * the code cache's address space.  An nmethod occupies its address range
+ * from its creation until it is made a zombie, or until a later nmethod is
+ * placed over it, which means it was flushed without the log saying so.
+ * Every change is recorded as a {@link Sample} of occupancy and
+ * fragmentation, and the lifetimes answer which nmethods were live at a
+ * given time.
+ */
+public class CodeCacheTimeline {
+
+    /**
+     * Lifetimes are grouped in blocks of this many, each with the latest
+     * end of its members, so lookups by time skip most of them.
+     */
+    static final int BLOCK = 64;
+
+    /**
+     * The state of the code cache after one event.
+     */
+    public static class Sample {
+        private final double time;
+        private final long usedBytes;
+        private final long notEntrantBytes;
+        private final int nmethods;
+        private final long spanBytes;
+        private final long largestGap;
+
+        Sample(double time, long usedBytes, long notEntrantBytes, int nmethods, long spanBytes, long largestGap) {
+            this.time = time;
+            this.usedBytes = usedBytes;
+            this.notEntrantBytes = notEntrantBytes;
+            this.nmethods = nmethods;
+            this.spanBytes = spanBytes;
+            this.largestGap = largestGap;
+        }
+
+        public double getTime() {
+            return time;
+        }
+
+        /**
+         * Bytes of all nmethods in the cache, including not entrant ones.
+         */
+        public long getUsedBytes() {
+            return usedBytes;
+        }
+
+        public long getNotEntrantBytes() {
+            return notEntrantBytes;
+        }
+
+        public int getNMethods() {
+            return nmethods;
+        }
+
+        /**
+         * From the lowest to the highest address in use.
+         */
+        public long getSpanBytes() {
+            return spanBytes;
+        }
+
+        public long getFreeBytes() {
+            return spanBytes - usedBytes;
+        }
+
+        public long getLargestGap() {
+            return largestGap;
+        }
+
+        /**
+         * 0 when the free space within the span is one piece (or there is
+         * none), approaching 1 the more it is split up.
+         */
+        public double getFragmentation() {
+            long free = getFreeBytes();
+            return free <= 0 ? 0 : 1 - (double) largestGap / free;
+        }
+    }
+
+    /**
+     * A free range between two nmethods.
+     */
+    public static class Gap {
+        private final long address;
+        private final long size;
+
+        Gap(long address, long size) {
+            this.address = address;
+            this.size = size;
+        }
+
+        public long getAddress() {
+            return address;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+
+    // nmethods by creation, with their lifetimes
+    private final List<NMethod> nmethods = new ArrayList<NMethod>();
+    private double[] freed;
+    private double[] notEntrant;
+    private double[] blockFreed;
+    private final List<Sample> samples = new ArrayList<Sample>();
+    private Sample peak;
+
+    // the replay state
+    private final TreeMap<Long, Integer> occupied = new TreeMap<Long, Integer>();
+    private final TreeMap<Long, Integer> gaps = new TreeMap<Long, Integer>();
+    private long used;
+    private long notEntrantBytes;
+
+    /**
+     * Replays the events, which must be sorted by start.
+     */
+    public CodeCacheTimeline(List<LogEvent> events) {
+        Map<NMethod, Integer> indexes = new IdentityHashMap<NMethod, Integer>();
+        for (LogEvent e : events) {
+            if (e instanceof NMethod) {
+                indexes.put((NMethod) e, nmethods.size());
+                nmethods.add((NMethod) e);
+            }
+        }
+        int n = nmethods.size();
+        freed = new double[n];
+        notEntrant = new double[n];
+        Arrays.fill(freed, Double.POSITIVE_INFINITY);
+        Arrays.fill(notEntrant, Double.POSITIVE_INFINITY);
+
+        for (LogEvent e : events) {
+            if (e instanceof NMethod) {
+                allocate(indexes.get(e), e.getStart());
+            } else if (e instanceof MakeNotEntrantEvent) {
+                MakeNotEntrantEvent mne = (MakeNotEntrantEvent) e;
+                Integer i = mne.getNMethod() != null ? indexes.get(mne.getNMethod()) : null;
+                if (i == null || freed[i] != Double.POSITIVE_INFINITY) {
+                    continue;
+                }
+                if (notEntrant[i] == Double.POSITIVE_INFINITY) {
+                    notEntrant[i] = e.getStart();
+                    notEntrantBytes += nmethods.get(i).getSize();
+                }
+                if (mne.isZombie()) {
+                    release(i, e.getStart());
+                }
+            } else {
+                continue;
+            }
+            sample(e.getStart());
+        }
+
+        blockFreed = new double[(n + BLOCK - 1) / BLOCK];
+        Arrays.fill(blockFreed, Double.NEGATIVE_INFINITY);
+        for (int i = 0; i < n; i++) {
+            blockFreed[i / BLOCK] = Math.max(blockFreed[i / BLOCK], freed[i]);
+        }
+    }
+
+    private void allocate(int i, double time) {
+        NMethod nm = nmethods.get(i);
+        long start = nm.getAddress();
+        long end = start + nm.getSize();
+        // whatever was here before has been flushed
+        Map.Entry<Long, Integer> below = occupied.lowerEntry(end);
+        while (below != null && end(below.getValue()) > start) {
+            release(below.getValue(), time);
+            below = occupied.lowerEntry(end);
+        }
+
+        Map.Entry<Long, Integer> lower = occupied.lowerEntry(start);
+        Map.Entry<Long, Integer> higher = occupied.higherEntry(start);
+        if (lower != null && higher != null) {
+            removeGap(higher.getKey() - end(lower.getValue()));
+        }
+        if (lower != null) {
+            addGap(start - end(lower.getValue()));
+        }
+        if (higher != null) {
+            addGap(higher.getKey() - end);
+        }
+        occupied.put(start, i);
+        used += nm.getSize();
+    }
+
+    private void release(int i, double time) {
+        NMethod nm = nmethods.get(i);
+        long start = nm.getAddress();
+        Map.Entry<Long, Integer> lower = occupied.lowerEntry(start);
+        Map.Entry<Long, Integer> higher = occupied.higherEntry(start);
+        if (lower != null) {
+            removeGap(start - end(lower.getValue()));
+        }
+        if (higher != null) {
+            removeGap(higher.getKey() - end(i));
+        }
+        if (lower != null && higher != null) {
+            addGap(higher.getKey() - end(lower.getValue()));
+        }
+        occupied.remove(start);
+        used -= nm.getSize();
+        if (notEntrant[i] != Double.POSITIVE_INFINITY) {
+            notEntrantBytes -= nm.getSize();
+        }
+        freed[i] = time;
+    }
+
+    private long end(int i) {
+        NMethod nm = nmethods.get(i);
+        return nm.getAddress() + nm.getSize();
+    }
+
+    private void addGap(long size) {
+        if (size > 0) {
+            Integer count = gaps.get(size);
+            gaps.put(size, count == null ? 1 : count + 1);
+        }
+    }
+
+    private void removeGap(long size) {
+        if (size > 0) {
+            Integer count = gaps.get(size);
+            if (count == 1) {
+                gaps.remove(size);
+            } else {
+                gaps.put(size, count - 1);
+            }
+        }
+    }
+
+    private void sample(double time) {
+        long span = occupied.isEmpty() ? 0 : end(occupied.lastEntry().getValue()) - occupied.firstKey();
+        long largestGap = gaps.isEmpty() ? 0 : gaps.lastKey();
+        Sample s = new Sample(time, used, notEntrantBytes, occupied.size(), span, largestGap);
+        if (!samples.isEmpty() && samples.get(samples.size() - 1).getTime() == time) {
+            // only the state after the last event at a time is of interest
+            samples.set(samples.size() - 1, s);
+        } else {
+            samples.add(s);
+        }
+        if (peak == null || used > peak.getUsedBytes()) {
+            peak = s;
+        }
+    }
+
+    public List<Sample> getSamples() {
+        return Collections.unmodifiableList(samples);
+    }
+
+    /**
+     * The sample with the most bytes in use, or null without nmethods.
+     */
+    public Sample getPeak() {
+        return peak;
+    }
+
+    /**
+     * The nmethods occupying the code cache at the given time, in the order
+     * they were created.
+     */
+    public List<NMethod> liveAt(double time) {
+        List<NMethod> live = new ArrayList<NMethod>();
+        for (int block = 0; block < blockFreed.length; block++) {
+            if (blockFreed[block] <= time) {
+                continue;
+            }
+            int to = Math.min(nmethods.size(), (block + 1) * BLOCK);
+            for (int i = block * BLOCK; i < to; i++) {
+                NMethod nm = nmethods.get(i);
+                if (nm.getStart() > time) {
+                    // nmethods are in order of creation
+                    return live;
+                }
+                if (freed[i] > time) {
+                    live.add(nm);
+                }
+            }
+        }
+        return live;
+    }
+
+    /**
+     * The largest nmethods live at the given time.
+     */
+    public List<NMethod> topConsumers(double time, int n) {
+        List<NMethod> live = liveAt(time);
+        Collections.sort(live, new Comparator<NMethod>() {
+            public int compare(NMethod a, NMethod b) {
+                return Long.compare(b.getSize(), a.getSize());
+            }
+        });
+        return live.subList(0, Math.min(n, live.size()));
+    }
+
+    /**
+     * The largest free ranges between the nmethods live at the given time.
+     */
+    public List<Gap> largestGaps(double time, int n) {
+        List<NMethod> live = liveAt(time);
+        Collections.sort(live, new Comparator<NMethod>() {
+            public int compare(NMethod a, NMethod b) {
+                return Long.compare(a.getAddress(), b.getAddress());
+            }
+        });
+        List<Gap> result = new ArrayList<Gap>();
+        Iterator<NMethod> it = live.iterator();
+        if (it.hasNext()) {
+            NMethod previous = it.next();
+            while (it.hasNext()) {
+                NMethod nm = it.next();
+                long end = previous.getAddress() + previous.getSize();
+                if (nm.getAddress() > end) {
+                    result.add(new Gap(end, nm.getAddress() - end));
+                }
+                previous = nm;
+            }
+        }
+        Collections.sort(result, new Comparator<Gap>() {
+            public int compare(Gap a, Gap b) {
+                return Long.compare(b.getSize(), a.getSize());
+            }
+        });
+        return result.subList(0, Math.min(n, result.size()));
+    }
+
+    public void printCsv(PrintStream out) {
+        out.println("time,used_bytes,not_entrant_bytes,nmethods,span_bytes,free_bytes,largest_gap,fragmentation");
+        for (Sample s : samples) {
+            out.printf("%.3f,%d,%d,%d,%d,%d,%d,%.4f\n", s.getTime(), s.getUsedBytes(), s.getNotEntrantBytes(),
+                    s.getNMethods(), s.getSpanBytes(), s.getFreeBytes(), s.getLargestGap(), s.getFragmentation());
+        }
+    }
+
+    public void printSummary(PrintStream out, int n) {
+        if (peak == null) {
+            out.println("No nmethods");
+            return;
+        }
+        Sample last = samples.get(samples.size() - 1);
+        out.printf("Code cache: %d nmethods, %d bytes at the end; peak %d bytes in %d nmethods at %.3f\n",
+                last.getNMethods(), last.getUsedBytes(), peak.getUsedBytes(), peak.getNMethods(), peak.getTime());
+        out.printf("At the peak: span %d bytes, %d free, largest gap %d, fragmentation %.4f, %d not entrant bytes\n",
+                peak.getSpanBytes(), peak.getFreeBytes(), peak.getLargestGap(), peak.getFragmentation(),
+                peak.getNotEntrantBytes());
+        out.println("Largest nmethods at the peak:");
+        for (NMethod nm : topConsumers(peak.getTime(), n)) {
+            Compilation c = nm.getCompilation();
+            out.printf("%10d 0x%x %s\n", nm.getSize(), nm.getAddress(),
+                    c != null && c.getMethod() != null ? c.getMethod().format(c.isOsr() ? c.getOsr_bci() : -1) : nm.getId());
+        }
+        out.println("Largest gaps at the peak:");
+        for (Gap gap : largestGaps(peak.getTime(), n)) {
+            out.printf("%10d 0x%x\n", gap.getSize(), gap.getAddress());
+        }
+    }
+}
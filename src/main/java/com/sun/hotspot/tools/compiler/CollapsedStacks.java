@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Turns the inlining trees of all compilations into collapsed stacks, the
+ * input of flame graph tools: one line per distinct path from a compiled
+ * method to an inlined call, with the weight of that call itself.
+ *
+ * Bytes and counts belong to a single call site.  End nodes and parse
+ * times are running totals of the compilation when the parse of a method
+ * finished, so a method gets what was added since its previous inlined
+ * sibling finished, or since its caller started, minus what its own
+ * inlined callees added.  What a caller adds before a call is therefore
+ * counted for the callee.
+ */
+public class CollapsedStacks implements LogEventListener {
+
+    public enum Weight {
+        /** the bytecode size of every inlined method */
+        BYTES,
+        /** the IR nodes of the parse of every inlined method */
+        NODES,
+        /** the parse time of every inlined method, in microseconds */
+        TIME,
+        /** the invocation count of every call site, inlined or not */
+        COUNT
+    }
+
+    private final Weight weight;
+    private final Map<String, long[]> stacks = new HashMap<String, long[]>();
+    private final StringBuilder stack = new StringBuilder();
+
+    public CollapsedStacks(Weight weight) {
+        this.weight = weight;
+    }
+
+    public void add(Compilation c) {
+        InlineTree tree = c.getInlineTree();
+        if (c.getMethod() == null || tree == null || tree.size() == 0) {
+            return;
+        }
+        long start = 0;
+        if (weight == Weight.TIME) {
+            start = micros(c.getStart());
+        } else if (weight == Weight.NODES) {
+            List<Phase> phases = c.getPhases();
+            start = phases.isEmpty() ? 0 : phases.get(0).getStartNodes();
+        }
+        stack.setLength(0);
+        add(tree, 0, start);
+    }
+
+    private static long micros(double seconds) {
+        return Math.round(seconds * 1000000);
+    }
+
+    private boolean isParsed(InlineTree tree, int node) {
+        return tree.getEndNodes(node) > 0;
+    }
+
+    /**
+     * The running total when the parse of the node finished.
+     */
+    private long end(InlineTree tree, int node) {
+        return weight == Weight.TIME ? micros(tree.getTimeStamp(node)) : tree.getEndNodes(node);
+    }
+
+    private void add(InlineTree tree, int node, long start) {
+        int length = stack.length();
+        if (length > 0) {
+            stack.append(';');
+        }
+        Method m = tree.getMethod(node);
+        stack.append(m.getHolder().replace('/', '.')).append("::").append(m.getName());
+
+        long self;
+        if (weight == Weight.NODES || weight == Weight.TIME) {
+            long cursor = start;
+            for (int child = tree.getFirstChild(node); child >= 0; child = tree.getNextSibling(child)) {
+                if (isParsed(tree, child)) {
+                    add(tree, child, cursor);
+                    cursor = Math.max(cursor, end(tree, child));
+                }
+            }
+            self = isParsed(tree, node) ? end(tree, node) - cursor : 0;
+        } else {
+            for (int child = tree.getFirstChild(node); child >= 0; child = tree.getNextSibling(child)) {
+                if (weight == Weight.COUNT || isInlined(tree, child)) {
+                    add(tree, child, 0);
+                }
+            }
+            self = weight == Weight.COUNT ? tree.getCount(node) : m.getBytes();
+        }
+        if (self > 0) {
+            String key = stack.toString();
+            long[] total = stacks.get(key);
+            if (total == null) {
+                stacks.put(key, new long[]{self});
+            } else {
+                total[0] += self;
+            }
+        }
+        stack.setLength(length);
+    }
+
+    private static boolean isInlined(InlineTree tree, int node) {
+        return tree.getReasonCode(node) == 0 && !tree.isIntrinsic(node);
+    }
+
+    public void onCompilation(Compilation compilation) {
+        add(compilation);
+    }
+
+    public void onNMethod(NMethod nmethod) {
+    }
+
+    public void onUncommonTrap(UncommonTrapEvent trap) {
+    }
+
+    public void onMakeNotEntrant(MakeNotEntrantEvent event) {
+    }
+
+    /**
+     * Prints the stacks sorted, as "frame;frame;frame weight" lines.
+     */
+    public void print(PrintStream out) {
+        for (Map.Entry<String, long[]> entry : new TreeMap<String, long[]>(stacks).entrySet()) {
+            out.print(entry.getKey());
+            out.print(' ');
+            out.println(entry.getValue()[0]);
+        }
+    }
+}
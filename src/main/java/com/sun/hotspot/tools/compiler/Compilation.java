@@ -32,10 +32,10 @@ public class Compilation implements LogEvent {
     private int id;
     private boolean osr;
     private Method method;
-    private CallSite call = new CallSite();
+    private InlineTree inlineTree;
     private int osrBci;
-    private String icount;
-    private String bcount;
+    private int icount;
+    private int bcount;
     private String special;
     private double start;
     private double end;
@@ -110,8 +110,8 @@ public class Compilation implements LogEvent {
             if (getFailureReason() != null) {
                 stream.println("COMPILE FAILED " + getFailureReason());
             }
-            if (printInlining && call.getCalls() != null) {
-                for (CallSite site : call.getCalls()) {
+            if (printInlining && getCall().getCalls() != null) {
+                for (CallSite site : getCall().getCalls()) {
                     site.print(stream, indent + 2);
                 }
             }
@@ -142,19 +142,19 @@ public class Compilation implements LogEvent {
         this.osrBci = osrBci;
     }
 
-    public String getIcount() {
+    public int getIcount() {
         return icount;
     }
 
-    public void setICount(String icount) {
+    public void setICount(int icount) {
         this.icount = icount;
     }
 
-    public String getBcount() {
+    public int getBcount() {
         return bcount;
     }
 
-    public void setBCount(String bcount) {
+    public void setBCount(int bcount) {
         this.bcount = bcount;
     }
 
@@ -218,18 +218,33 @@ public class Compilation implements LogEvent {
         this.method = method;
     }
 
+    /**
+     * The root of the inlining tree, whose method is the compiled method.
+     */
     public CallSite getCall() {
-        return call;
+        return inlineTree.getRoot();
     }
 
-    public void setCall(CallSite call) {
-        this.call = call;
+    public InlineTree getInlineTree() {
+        return inlineTree;
+    }
+
+    void setInlineTree(InlineTree inlineTree) {
+        this.inlineTree = inlineTree;
     }
 
     public double getElapsedTime() {
         return end - start;
     }
 
+    /**
+     * Whether the end of the compilation is known.  Without a task_done,
+     * e.g. in a log cut short, the elapsed time is meaningless.
+     */
+    public boolean hasEnd() {
+        return end >= start;
+    }
+
     public Compilation getCompilation() {
         return this;
     }
@@ -0,0 +1,321 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Rolls compile time, nmethod size, IR node growth and attempts up by
+ * method, holder, package, compiler, OSR and phase, keeping a
+ * {@link Histogram} per group and metric.  Statistics of disjoint sets of
+ * compilations merge, so {@link #of} splits the work across the cores.
+ */
+public class CompileStatistics {
+
+    public enum Dimension {
+        METHOD, HOLDER, PACKAGE, COMPILER, OSR, PHASE
+    }
+
+    public enum Metric {
+        COMPILE_TIME("time (ms)", 1000.0),
+        NMETHOD_SIZE("size (bytes)", 1),
+        NODE_GROWTH("node growth", 1),
+        ATTEMPTS("attempts", 1);
+
+        private final String label;
+        private final double scale;
+
+        Metric(String label, double scale) {
+            this.label = label;
+            this.scale = scale;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * Converts a recorded value to the unit of the label, times are
+         * recorded in microseconds.
+         */
+        public double scale(double value) {
+            return value / scale;
+        }
+    }
+
+    /**
+     * Below this many compilations a part isn't split any further.
+     */
+    static final int THRESHOLD = 1 << 11;
+
+    public static class Group {
+        private final String key;
+        private final Histogram[] metrics = new Histogram[Metric.values().length];
+
+        Group(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * The number of compilations (or phases) in the group.
+         */
+        public long getCount() {
+            return getHistogram(Metric.COMPILE_TIME).getCount();
+        }
+
+        public Histogram getHistogram(Metric metric) {
+            Histogram h = metrics[metric.ordinal()];
+            if (h == null) {
+                h = new Histogram();
+                metrics[metric.ordinal()] = h;
+            }
+            return h;
+        }
+
+        void merge(Group other) {
+            for (Metric metric : Metric.values()) {
+                if (other.metrics[metric.ordinal()] != null) {
+                    getHistogram(metric).merge(other.metrics[metric.ordinal()]);
+                }
+            }
+        }
+    }
+
+    private final Map<String, Group>[] groups = newMaps(Dimension.values().length);
+    // keys are cached, method names and packages repeat
+    private final Map<Method, String> methodKeys = new IdentityHashMap<Method, String>();
+    private final Map<String, String> packageKeys = new HashMap<String, String>();
+    private long unfinished;
+
+    private static Map<String, Group>[] newMaps(int n) {
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Map<String, Group>[] maps = new Map[n];
+        for (int i = 0; i < n; i++) {
+            maps[i] = new HashMap<String, Group>();
+        }
+        return maps;
+    }
+
+    /**
+     * Aggregates the compilations among the events in parallel.
+     */
+    public static CompileStatistics of(List<LogEvent> events) {
+        List<Compilation> compilations = new ArrayList<Compilation>();
+        for (LogEvent e : events) {
+            if (e instanceof Compilation) {
+                compilations.add((Compilation) e);
+            }
+        }
+        Part part = new Part(compilations, 0, compilations.size());
+        return compilations.size() < THRESHOLD ? part.compute() : EventStore.pool().invoke(part);
+    }
+
+    public void add(Compilation c) {
+        Method m = c.getMethod();
+        if (m == null) {
+            return;
+        }
+        if (!c.hasEnd()) {
+            // its time would be negative and skew every histogram
+            unfinished++;
+            return;
+        }
+        String holder = m.getHolder().replace('/', '.');
+        String methodKey = methodKeys.get(m);
+        if (methodKey == null) {
+            // the signature keeps overloads apart
+            methodKey = holder + "::" + m.getName() + m.getSignature();
+            methodKeys.put(m, methodKey);
+        }
+        String packageKey = packageKeys.get(holder);
+        if (packageKey == null) {
+            int dot = holder.lastIndexOf('.');
+            packageKey = dot < 0 ? "(default)" : holder.substring(0, dot);
+            packageKeys.put(holder, packageKey);
+        }
+        NMethod nm = c.getNMethod();
+        String compiler = nm != null && nm.getCompiler() != null ? nm.getCompiler() : "unknown";
+
+        long time = Math.round(c.getElapsedTime() * 1000000);
+        long growth = nodeGrowth(c);
+        record(Dimension.METHOD, methodKey, c, time, growth);
+        record(Dimension.HOLDER, holder, c, time, growth);
+        record(Dimension.PACKAGE, packageKey, c, time, growth);
+        record(Dimension.COMPILER, compiler, c, time, growth);
+        record(Dimension.OSR, c.isOsr() ? "osr" : "normal", c, time, growth);
+
+        for (Phase phase : c.getPhases()) {
+            Group g = group(Dimension.PHASE, phase.getName());
+            g.getHistogram(Metric.COMPILE_TIME).record(Math.round(phase.getElapsedTime() * 1000000));
+            g.getHistogram(Metric.NODE_GROWTH).record(phase.getNodes());
+        }
+    }
+
+    private void record(Dimension dimension, String key, Compilation c, long time, long growth) {
+        Group g = group(dimension, key);
+        g.getHistogram(Metric.COMPILE_TIME).record(time);
+        if (c.getNMethod() != null) {
+            g.getHistogram(Metric.NMETHOD_SIZE).record(c.getNMethod().getSize());
+        }
+        g.getHistogram(Metric.NODE_GROWTH).record(growth);
+        g.getHistogram(Metric.ATTEMPTS).record(c.getAttempts());
+    }
+
+    /**
+     * The peak number of IR nodes minus the number the first phase started
+     * with.  Phases nest, so their own growth can't simply be added up.
+     */
+    static long nodeGrowth(Compilation c) {
+        List<Phase> phases = c.getPhases();
+        if (phases.isEmpty()) {
+            return 0;
+        }
+        int peak = 0;
+        for (Phase phase : phases) {
+            peak = Math.max(peak, Math.max(phase.getStartNodes(), phase.getEndNodes()));
+        }
+        return peak - phases.get(0).getStartNodes();
+    }
+
+    private Group group(Dimension dimension, String key) {
+        Map<String, Group> map = groups[dimension.ordinal()];
+        Group g = map.get(key);
+        if (g == null) {
+            g = new Group(key);
+            map.put(key, g);
+        }
+        return g;
+    }
+
+    /**
+     * The number of compilations left out because their end is unknown.
+     */
+    public long getUnfinished() {
+        return unfinished;
+    }
+
+    public void merge(CompileStatistics other) {
+        unfinished += other.unfinished;
+        for (Dimension dimension : Dimension.values()) {
+            for (Group g : other.groups[dimension.ordinal()].values()) {
+                group(dimension, g.getKey()).merge(g);
+            }
+        }
+    }
+
+    /**
+     * The groups of a dimension, the most expensive in compile time first.
+     */
+    public List<Group> getGroups(Dimension dimension) {
+        List<Group> result = new ArrayList<Group>(groups[dimension.ordinal()].values());
+        Collections.sort(result, new Comparator<Group>() {
+            public int compare(Group a, Group b) {
+                long ta = a.getHistogram(Metric.COMPILE_TIME).getSum();
+                long tb = b.getHistogram(Metric.COMPILE_TIME).getSum();
+                if (ta != tb) {
+                    return ta > tb ? -1 : 1;
+                }
+                return a.getKey().compareTo(b.getKey());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Prints the top groups of every dimension, limit <= 0 prints all.
+     */
+    public void print(PrintStream out, int limit) {
+        if (unfinished > 0) {
+            out.printf("%d compilations without a known end left out\n", unfinished);
+        }
+        for (Dimension dimension : Dimension.values()) {
+            List<Group> list = getGroups(dimension);
+            out.printf("By %s (%d groups):\n", dimension.name().toLowerCase(), list.size());
+            out.printf("    %-14s %10s %10s %10s %10s %10s %10s\n", "", "total", "mean", "p50", "p90", "p99", "max");
+            int n = 0;
+            for (Group g : list) {
+                if (limit > 0 && n++ == limit) {
+                    break;
+                }
+                out.printf("%s: %d\n", g.getKey(), g.getCount());
+                for (Metric metric : Metric.values()) {
+                    Histogram h = g.getHistogram(metric);
+                    if (h.getCount() == 0) {
+                        continue;
+                    }
+                    out.printf("    %-14s %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f\n", metric.getLabel(),
+                            metric.scale(h.getSum()), metric.scale(h.getMean()),
+                            metric.scale(h.getPercentile(0.5)), metric.scale(h.getPercentile(0.9)),
+                            metric.scale(h.getPercentile(0.99)), metric.scale(h.getMax()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Aggregates a range of compilations, splitting it in halves while it
+     * is large.
+     */
+    static class Part extends RecursiveTask<CompileStatistics> {
+        private final List<Compilation> compilations;
+        private final int from;
+        private final int to;
+
+        Part(List<Compilation> compilations, int from, int to) {
+            this.compilations = compilations;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected CompileStatistics compute() {
+            if (to - from < THRESHOLD || getPool() == null) {
+                CompileStatistics statistics = new CompileStatistics();
+                for (int i = from; i < to; i++) {
+                    statistics.add(compilations.get(i));
+                }
+                return statistics;
+            }
+            int mid = (from + to) >>> 1;
+            Part left = new Part(compilations, from, mid);
+            left.fork();
+            CompileStatistics result = new Part(compilations, mid, to).compute();
+            result.merge(left.join());
+            return result;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Writes the events as soon as they are parsed into flat CSV tables in a
+ * directory: compilations.csv, call_sites.csv (one row per node of the
+ * inlining trees, with its parent), phases.csv, traps.csv, nmethods.csv and
+ * make_not_entrant.csv.  Every row starts with the log it came from, rows
+ * of a compilation share log, compile_id and kind.  Methods are written as
+ * holder, name and signature.  Nothing is kept once it is written.  An IOException of a writer is
+ * rethrown wrapped in a RuntimeException, which ends the parse.
+ */
+public class CsvExporter implements Exporter {
+
+    private final Table compilations;
+    private final Table callSites;
+    private final Table phases;
+    private final Table traps;
+    private final Table nmethods;
+    private final Table notEntrant;
+    private String log = "";
+
+    public CsvExporter(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("can't create " + directory);
+        }
+        compilations = new Table(directory, "compilations", "log", "compile_id", "kind", "osr_bci", "holder",
+                "name", "signature", "special", "bytes", "start", "end", "attempts", "icount", "bcount", "failure",
+                "nmethod_address", "nmethod_size");
+        callSites = new Table(directory, "call_sites", "log", "compile_id", "kind", "node", "parent", "depth", "bci",
+                "holder", "name", "signature", "bytes", "count", "reason", "intrinsic", "receiver", "receiver_count",
+                "end_nodes", "time");
+        phases = new Table(directory, "phases", "log", "compile_id", "kind", "name", "start", "end", "start_nodes",
+                "end_nodes");
+        traps = new Table(directory, "traps", "log", "compile_id", "start", "reason", "action", "count", "holder",
+                "name", "signature", "bci", "jvms");
+        nmethods = new Table(directory, "nmethods", "log", "compile_id", "start", "address", "size", "compiler");
+        notEntrant = new Table(directory, "make_not_entrant", "log", "compile_id", "start", "zombie");
+    }
+
+    public void setLog(String log) {
+        this.log = log;
+    }
+
+    public void onCompilation(Compilation c) {
+        String kind = c.isOsr() ? "osr" : "normal";
+        Method m = c.getMethod();
+        NMethod nm = c.getNMethod();
+        compilations.row(log, c.getId(), kind, c.isOsr() ? c.getOsr_bci() : "",
+                holder(m), m != null ? m.getName() : "", m != null ? m.getSignature() : "",
+                m != null ? "" : c.getSpecial(), m != null ? m.getBytes() : "",
+                c.getStart(), c.getEnd(), c.getAttempts(), c.getIcount(), c.getBcount(), c.getFailureReason(),
+                nm != null ? nm.getAddress() : "", nm != null ? nm.getSize() : "");
+        for (Phase phase : c.getPhases()) {
+            phases.row(log, c.getId(), kind, phase.getName(), phase.getStart(), phase.getEnd(), phase.getStartNodes(),
+                    phase.getEndNodes());
+        }
+        InlineTree tree = c.getInlineTree();
+        if (tree == null || m == null) {
+            return;
+        }
+        for (int node = 0; node < tree.size(); node++) {
+            int depth = 0;
+            for (int parent = tree.getParent(node); parent >= 0; parent = tree.getParent(parent)) {
+                depth++;
+            }
+            Reason reason = tree.getReason(node);
+            String receiver = tree.getReceiver(node);
+            Method callee = tree.getMethod(node);
+            callSites.row(log, c.getId(), kind, node, node > 0 ? tree.getParent(node) : "", depth, tree.getBci(node),
+                    holder(callee), callee.getName(), callee.getSignature(), callee.getBytes(), tree.getCount(node),
+                    reason != null ? reason.getText() : "", tree.isIntrinsic(node),
+                    receiver, receiver != null ? tree.getReceiverCount(node) : "",
+                    tree.getEndNodes(node), tree.getEndNodes(node) > 0 ? tree.getTimeStamp(node) : "");
+        }
+    }
+
+    public void onNMethod(NMethod nm) {
+        nmethods.row(log, nm.getId(), nm.getStart(), nm.getAddress(), nm.getSize(), nm.getCompiler());
+    }
+
+    public void onUncommonTrap(UncommonTrapEvent trap) {
+        Method top = trap.getFrameCount() > 0 ? trap.getFrameMethod(0) : null;
+        traps.row(log, trap.getId(), trap.getStart(), trap.getReason(), trap.getAction(), trap.getCount(),
+                holder(top), top != null ? top.getName() : "", top != null ? top.getSignature() : "",
+                top != null ? trap.getFrameBci(0) : "", trap.getJvms().trim());
+    }
+
+    public void onMakeNotEntrant(MakeNotEntrantEvent event) {
+        notEntrant.row(log, event.getId(), event.getStart(), event.isZombie());
+    }
+
+    private static String holder(Method m) {
+        return m != null ? m.getHolder().replace('/', '.') : "";
+    }
+
+    public void close() throws IOException {
+        IOException failure = null;
+        for (Table table : new Table[]{compilations, callSites, phases, traps, nmethods, notEntrant}) {
+            try {
+                table.out.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    static class Table {
+        final Writer out;
+        private final StringBuilder line = new StringBuilder();
+
+        Table(File directory, String name, String... columns) throws IOException {
+            out = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(new File(directory, name + ".csv")), "UTF-8"), 1 << 16);
+            row((Object[]) columns);
+        }
+
+        void row(Object... values) {
+            line.setLength(0);
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                append(values[i]);
+            }
+            line.append('\n');
+            try {
+                out.append(line);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private void append(Object value) {
+            if (value == null) {
+                return;
+            }
+            if (value instanceof Double) {
+                line.append(JsonLinesExporter.round((Double) value));
+                return;
+            }
+            String s = value.toString();
+            if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) {
+                line.append(s);
+                return;
+            }
+            line.append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '"') {
+                    line.append('"');
+                }
+                line.append(c);
+            }
+            line.append('"');
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Converts between the methods of JVM states, which the log writes as
+ * "holder name (descriptor)return", and the type names <method> elements
+ * use, so both end up as the same {@link Method}.
+ */
+final class Descriptors {
+
+    private static final String PRIMITIVES = "ZBCSIJFDV";
+    private static final String[] NAMES = {
+        "boolean", "byte", "char", "short", "int", "long", "float", "double", "void"
+    };
+    private static final Map<String, String> unmapped = new HashMap<String, String>();
+    static {
+        for (Map.Entry<String, String> e : LogParser.typeMap.entrySet()) {
+            unmapped.put(e.getValue(), e.getKey());
+        }
+    }
+
+    private Descriptors() {
+    }
+
+    /**
+     * Returns a partial method for a JVM state's method, not yet interned.
+     */
+    static Method parse(String method) {
+        int space = method.indexOf(' ');
+        int space2 = method.indexOf(' ', space + 1);
+        int close = method.indexOf(')', space2);
+        Method m = new Method();
+        m.setHolder(method.substring(0, space));
+        m.setName(method.substring(space + 1, space2));
+        StringBuilder arguments = new StringBuilder();
+        for (int i = space2 + 2; i < close; ) {
+            int end = typeEnd(method, i);
+            if (arguments.length() > 0) {
+                arguments.append(' ');
+            }
+            arguments.append(typeName(method.substring(i, end)));
+            i = end;
+        }
+        m.setArguments(arguments.length() == 0 ? "void" : arguments.toString());
+        m.setReturnType(typeName(method.substring(close + 1)));
+        m.setPartial(true);
+        return m;
+    }
+
+    static String format(Method m) {
+        return m.getHolder() + ' ' + m.getName() + ' ' + signature(m);
+    }
+
+    /**
+     * Returns the method's descriptor, like (Ljava/lang/String;I)V.
+     */
+    static String signature(Method m) {
+        StringBuilder sb = new StringBuilder("(");
+        if (!m.getArguments().equals("void")) {
+            for (String argument : m.getArguments().split(" ")) {
+                sb.append(descriptor(argument));
+            }
+        }
+        return sb.append(')').append(descriptor(m.getReturnType())).toString();
+    }
+
+    private static int typeEnd(String s, int i) {
+        while (s.charAt(i) == '[') {
+            i++;
+        }
+        return s.charAt(i) == 'L' ? s.indexOf(';', i) + 1 : i + 1;
+    }
+
+    private static String typeName(String descriptor) {
+        if (descriptor.length() == 1) {
+            return NAMES[PRIMITIVES.indexOf(descriptor.charAt(0))];
+        }
+        if (descriptor.charAt(0) == 'L') {
+            return descriptor.substring(1, descriptor.length() - 1);
+        }
+        // array klasses are named by their descriptor
+        String remapped = LogParser.typeMap.get(descriptor);
+        return remapped != null ? remapped : descriptor;
+    }
+
+    private static String descriptor(String name) {
+        for (int i = 0; i < NAMES.length; i++) {
+            if (NAMES[i].equals(name)) {
+                return String.valueOf(PRIMITIVES.charAt(i));
+            }
+        }
+        String unmappedName = unmapped.get(name);
+        if (unmappedName != null) {
+            return unmappedName;
+        }
+        return name.charAt(0) == '[' ? name : "L" + name + ";";
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The events of a log together with the orders they can be listed in.
+ * Each order is a permutation of the event indexes, built the first time
+ * it is asked for from keys computed once per event, so switching orders
+ * neither re-sorts the events nor calls into them per comparison.  Sorts
+ * are stable, ties keep the order the events were given in.
+ */
+public class EventStore {
+
+    public enum Order {
+        START, ELAPSED, NAME_AND_START, COMPILE_ID
+    }
+
+    /**
+     * Below this many events a sort isn't worth splitting across threads.
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    private static ForkJoinPool pool;
+
+    private final ArrayList<LogEvent> events;
+    private final int[][] indexes = new int[Order.values().length][];
+    private double[] starts;
+
+    public EventStore(List<LogEvent> events) {
+        this.events = new ArrayList<LogEvent>(events);
+    }
+
+    public int size() {
+        return events.size();
+    }
+
+    public LogEvent get(int i) {
+        return events.get(i);
+    }
+
+    /**
+     * Returns the events in the given order, as a view on the index.
+     */
+    public List<LogEvent> sorted(Order order) {
+        final int[] index = index(order);
+        return new AbstractList<LogEvent>() {
+            @Override
+            public LogEvent get(int i) {
+                return events.get(index[i]);
+            }
+
+            @Override
+            public int size() {
+                return index.length;
+            }
+        };
+    }
+
+    /**
+     * Returns the indexes of the events in the given order.  The array is
+     * shared and must not be changed.
+     */
+    public synchronized int[] index(Order order) {
+        int[] index = indexes[order.ordinal()];
+        if (index == null) {
+            index = build(order);
+            indexes[order.ordinal()] = index;
+        }
+        return index;
+    }
+
+    private int[] build(Order order) {
+        int n = events.size();
+        if (starts == null) {
+            starts = new double[n];
+            for (int i = 0; i < n; i++) {
+                starts[i] = events.get(i).getStart();
+            }
+        }
+        IndexComparator comparator;
+        switch (order) {
+            case START:
+                comparator = new DoubleKey(starts, null);
+                break;
+            case ELAPSED: {
+                double[] elapsed = new double[n];
+                for (int i = 0; i < n; i++) {
+                    elapsed[i] = events.get(i).getElapsedTime();
+                }
+                comparator = new DoubleKey(elapsed, null);
+                break;
+            }
+            case NAME_AND_START:
+                comparator = new DoubleKey(starts, methodRanks());
+                break;
+            case COMPILE_ID: {
+                int[] ids = new int[n];
+                for (int i = 0; i < n; i++) {
+                    Compilation c = events.get(i).getCompilation();
+                    ids[i] = c != null ? c.getId() : -1;
+                }
+                comparator = new DoubleKey(starts, ids);
+                break;
+            }
+            default:
+                throw new InternalError("unknown order " + order);
+        }
+
+        int[] index = new int[n];
+        for (int i = 0; i < n; i++) {
+            index[i] = i;
+        }
+        int[] buffer = index.clone();
+        MergeSort sort = new MergeSort(buffer, index, 0, n, comparator);
+        if (n < PARALLEL_THRESHOLD) {
+            sort.compute();
+        } else {
+            pool().invoke(sort);
+        }
+        return index;
+    }
+
+    /**
+     * The rank of each event's method by name, events without a compilation
+     * rank first.  Only the distinct methods are sorted by name.
+     */
+    private int[] methodRanks() {
+        int n = events.size();
+        Map<Method, Integer> ranks = new IdentityHashMap<Method, Integer>();
+        List<Method> methods = new ArrayList<Method>();
+        for (LogEvent e : events) {
+            Compilation c = e.getCompilation();
+            if (c != null && c.getMethod() != null && !ranks.containsKey(c.getMethod())) {
+                ranks.put(c.getMethod(), 0);
+                methods.add(c.getMethod());
+            }
+        }
+        final String[] names = new String[methods.size()];
+        Integer[] order = new Integer[methods.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = methods.get(i).toString();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return names[a].compareTo(names[b]);
+            }
+        });
+        int rank = 0;
+        for (int i = 0; i < order.length; i++) {
+            if (i > 0 && !names[order[i]].equals(names[order[i - 1]])) {
+                rank++;
+            }
+            ranks.put(methods.get(order[i]), rank + 1);
+        }
+
+        int[] result = new int[n];
+        for (int i = 0; i < n; i++) {
+            Compilation c = events.get(i).getCompilation();
+            result[i] = c != null && c.getMethod() != null ? ranks.get(c.getMethod()) : 0;
+        }
+        return result;
+    }
+
+    /**
+     * The pool shared by the parallel work on events.
+     */
+    static synchronized ForkJoinPool pool() {
+        if (pool == null) {
+            pool = new ForkJoinPool();
+        }
+        return pool;
+    }
+
+    interface IndexComparator {
+        int compare(int a, int b);
+    }
+
+    /**
+     * Orders by an optional int key first, then by a double key.
+     */
+    static class DoubleKey implements IndexComparator {
+        private final double[] keys;
+        private final int[] primary;
+
+        DoubleKey(double[] keys, int[] primary) {
+            this.keys = keys;
+            this.primary = primary;
+        }
+
+        public int compare(int a, int b) {
+            if (primary != null && primary[a] != primary[b]) {
+                return primary[a] < primary[b] ? -1 : 1;
+            }
+            double difference = keys[a] - keys[b];
+            if (difference < 0) {
+                return -1;
+            }
+            if (difference > 0) {
+                return 1;
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * A top down merge sort of an index array, sorting src[from, to) into
+     * dst[from, to).  Both start out as copies of each other.  The halves
+     * are sorted in parallel, and a merge is skipped when the halves are
+     * already in order, so sorting sorted input is linear.
+     */
+    static class MergeSort extends RecursiveAction {
+        private static final int INSERTION_SORT = 32;
+
+        private final int[] src;
+        private final int[] dst;
+        private final int from;
+        private final int to;
+        private final IndexComparator comparator;
+
+        MergeSort(int[] src, int[] dst, int from, int to, IndexComparator comparator) {
+            this.src = src;
+            this.dst = dst;
+            this.from = from;
+            this.to = to;
+            this.comparator = comparator;
+        }
+
+        @Override
+        protected void compute() {
+            int length = to - from;
+            if (length < INSERTION_SORT) {
+                for (int i = from + 1; i < to; i++) {
+                    int value = dst[i];
+                    int j = i;
+                    for (; j > from && comparator.compare(dst[j - 1], value) > 0; j--) {
+                        dst[j] = dst[j - 1];
+                    }
+                    dst[j] = value;
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            // sort the halves of dst into src, then merge them back
+            MergeSort left = new MergeSort(dst, src, from, mid, comparator);
+            MergeSort right = new MergeSort(dst, src, mid, to, comparator);
+            if (length >= PARALLEL_THRESHOLD && getPool() != null) {
+                invokeAll(left, right);
+            } else {
+                left.compute();
+                right.compute();
+            }
+            if (comparator.compare(src[mid - 1], src[mid]) <= 0) {
+                System.arraycopy(src, from, dst, from, length);
+                return;
+            }
+            for (int i = from, p = from, q = mid; i < to; i++) {
+                if (q >= to || (p < mid && comparator.compare(src[p], src[q]) <= 0)) {
+                    dst[i] = src[p++];
+                } else {
+                    dst[i] = src[q++];
+                }
+            }
+        }
+    }
+}
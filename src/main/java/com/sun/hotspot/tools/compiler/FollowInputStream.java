@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Reads a file that is still being written, like tail -f.  At the end of
+ * the file reads wait for more data instead of returning -1, so a parser
+ * reading through it keeps its state and only ever sees the appended
+ * bytes.  The end of the file is only reported once the VM has closed the
+ * root element, or when the stream is closed.  If the file shrinks a new
+ * VM started writing it, which is thrown as a {@link RotatedException};
+ * the reading thread being interrupted stops following too.
+ */
+public class FollowInputStream extends InputStream {
+
+    public static final long POLL_MILLIS = 250;
+
+    /**
+     * The file was replaced by a new log, its beginning has been missed.
+     */
+    public static class RotatedException extends IOException {
+        public RotatedException(String message) {
+            super(message);
+        }
+    }
+
+    private static final byte[] END = "</hotspot_log>".getBytes();
+
+    private final String fileName;
+    private final RandomAccessFile file;
+    private final long pollMillis;
+    private volatile boolean closed;
+    // how much of END the bytes read so far end with
+    private int endMatched;
+
+    public FollowInputStream(String fileName) throws IOException {
+        this(fileName, POLL_MILLIS);
+    }
+
+    public FollowInputStream(String fileName, long pollMillis) throws IOException {
+        this.fileName = fileName;
+        this.file = new RandomAccessFile(fileName, "r");
+        this.pollMillis = pollMillis;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (!closed) {
+            int n = file.read(b, off, len);
+            if (n > 0) {
+                match(b, off, n);
+                return n;
+            }
+            if (endMatched == END.length) {
+                return -1;
+            }
+            if (file.length() < file.getFilePointer()) {
+                throw new RotatedException(fileName + " was rewritten");
+            }
+            try {
+                Thread.sleep(pollMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("stopped following");
+            }
+        }
+        return -1;
+    }
+
+    private void match(byte[] b, int off, int n) {
+        for (int i = off; i < off + n; i++) {
+            if (endMatched < END.length && b[i] == END[endMatched]) {
+                endMatched++;
+            } else if (b[i] == END[0]) {
+                endMatched = 1;
+            } else if (endMatched < END.length || !Character.isWhitespace(b[i])) {
+                endMatched = 0;
+            }
+        }
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, file.length() - file.getFilePointer()));
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        file.close();
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+import java.util.Arrays;
+
+/**
+ * Count, sum, extremes and percentiles of a stream of long values.  The
+ * first EXACT values are kept as they are, so the many small groups of
+ * an aggregation cost little and report exact percentiles.  Beyond that
+ * the values go into log-linear buckets, 32 per power of two, which bounds
+ * the error of a percentile to about 3% while the size only grows with
+ * the magnitude of the values.  Histograms merge without losing anything
+ * the buckets didn't already lose.
+ */
+public class Histogram {
+
+    static final int EXACT = 64;
+    static final int SUB_BITS = 5;
+    static final int SUB_BUCKETS = 1 << SUB_BITS;
+    /**
+     * Values below this get a bucket of their own.
+     */
+    static final int LINEAR = 2 * SUB_BUCKETS;
+
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    private long[] values = new long[4];
+    // buckets of positive and negative values, null while values are exact
+    private long[] positive;
+    private long[] negative;
+
+    public void record(long value) {
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        if (positive == null) {
+            if (count <= EXACT) {
+                if (count > values.length) {
+                    values = Arrays.copyOf(values, values.length * 2);
+                }
+                values[(int) count - 1] = value;
+                return;
+            }
+            toBuckets((int) count - 1);
+        }
+        addToBucket(value, 1);
+    }
+
+    public void merge(Histogram other) {
+        if (other.count == 0) {
+            return;
+        }
+        if (other.positive == null) {
+            for (int i = 0; i < other.count; i++) {
+                record(other.values[i]);
+            }
+            return;
+        }
+        if (positive == null) {
+            toBuckets((int) count);
+        }
+        positive = add(positive, other.positive);
+        negative = add(negative, other.negative);
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    public long getMax() {
+        return count == 0 ? 0 : max;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * The value below or at which the given fraction of the values lie
+     * (nearest rank), e.g. 0.99 for p99.
+     */
+    public long getPercentile(double fraction) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        if (positive == null) {
+            long[] sorted = Arrays.copyOf(values, (int) count);
+            Arrays.sort(sorted);
+            return sorted[(int) rank - 1];
+        }
+        long seen = 0;
+        for (int i = negative.length - 1; i >= 0; i--) {
+            seen += negative[i];
+            if (seen >= rank) {
+                return clamp(-middle(i));
+            }
+        }
+        for (int i = 0; i < positive.length; i++) {
+            seen += positive[i];
+            if (seen >= rank) {
+                return clamp(middle(i));
+            }
+        }
+        return max;
+    }
+
+    private long clamp(long value) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private void toBuckets(int exact) {
+        positive = new long[0];
+        negative = new long[0];
+        for (int i = 0; i < exact; i++) {
+            addToBucket(values[i], 1);
+        }
+        values = null;
+    }
+
+    private void addToBucket(long value, long n) {
+        if (value >= 0) {
+            positive = increment(positive, bucket(value), n);
+        } else {
+            negative = increment(negative, bucket(-value), n);
+        }
+    }
+
+    private static long[] increment(long[] buckets, int bucket, long n) {
+        if (bucket >= buckets.length) {
+            buckets = Arrays.copyOf(buckets, bucket + 1);
+        }
+        buckets[bucket] += n;
+        return buckets;
+    }
+
+    private static long[] add(long[] a, long[] b) {
+        if (b.length > a.length) {
+            a = Arrays.copyOf(a, b.length);
+        }
+        for (int i = 0; i < b.length; i++) {
+            a[i] += b[i];
+        }
+        return a;
+    }
+
+    static int bucket(long magnitude) {
+        if (magnitude < LINEAR) {
+            return (int) magnitude;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(magnitude);
+        int mantissa = (int) (magnitude >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR + (exponent - SUB_BITS - 1) * SUB_BUCKETS + mantissa;
+    }
+
+    /**
+     * The middle of the values falling into a bucket.
+     */
+    static long middle(int bucket) {
+        if (bucket < LINEAR) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR) / SUB_BUCKETS + SUB_BITS + 1;
+        int mantissa = (bucket - LINEAR) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BITS);
+        return (SUB_BUCKETS + mantissa) * width + width / 2;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Failed inlines of a whole log, summed up by caller, callee and reason.
+ * Each row is weighted by the call site counts, how hot the calls that
+ * weren't inlined were, and by the callee's size times that count, which
+ * favors the big hot methods a refactoring would help most.
+ */
+public class InlineFailures {
+
+    public enum Order {
+        COUNT, WEIGHT
+    }
+
+    public static class Row {
+        private final Method caller;
+        private final Method callee;
+        private final Reason reason;
+        private int sites;
+        private long count;
+
+        Row(Method caller, Method callee, Reason reason) {
+            this.caller = caller;
+            this.callee = callee;
+            this.reason = reason;
+        }
+
+        public Method getCaller() {
+            return caller;
+        }
+
+        public Method getCallee() {
+            return callee;
+        }
+
+        public Reason getReason() {
+            return reason;
+        }
+
+        /**
+         * The number of call sites, in all compilations, that failed.
+         */
+        public int getSites() {
+            return sites;
+        }
+
+        /**
+         * The sum of the profiled counts of the failed call sites.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * The count times the callee's bytecode size.
+         */
+        public long getWeight() {
+            return count * callee.getBytes();
+        }
+    }
+
+    private final Map<List<Object>, Row> rows = new HashMap<List<Object>, Row>();
+    private final Map<Reason, Row> reasons = new HashMap<Reason, Row>();
+
+    public static InlineFailures of(List<LogEvent> events) {
+        InlineFailures failures = new InlineFailures();
+        for (LogEvent e : events) {
+            if (e instanceof Compilation && ((Compilation) e).getInlineTree() != null) {
+                failures.add(((Compilation) e).getInlineTree());
+            }
+        }
+        return failures;
+    }
+
+    public void add(InlineTree tree) {
+        for (int node = 1; node < tree.size(); node++) {
+            Reason reason = tree.getReason(node);
+            Method callee = tree.getMethod(node);
+            if (reason == null || callee == null) {
+                continue;
+            }
+            Method caller = tree.getMethod(tree.getParent(node));
+            // unknown counts are logged as -1
+            int count = Math.max(0, tree.getCount(node));
+            List<Object> key = Arrays.<Object>asList(caller, callee, reason);
+            Row row = rows.get(key);
+            if (row == null) {
+                row = new Row(caller, callee, reason);
+                rows.put(key, row);
+            }
+            row.sites++;
+            row.count += count;
+
+            Row total = reasons.get(reason);
+            if (total == null) {
+                total = new Row(null, null, reason);
+                reasons.put(reason, total);
+            }
+            total.sites++;
+            total.count += count;
+        }
+    }
+
+    /**
+     * All (caller, callee, reason) rows, the most costly first.
+     */
+    public List<Row> getRows(final Order order) {
+        List<Row> result = new ArrayList<Row>(rows.values());
+        Collections.sort(result, new Comparator<Row>() {
+            public int compare(Row a, Row b) {
+                long x = order == Order.COUNT ? a.getCount() : a.getWeight();
+                long y = order == Order.COUNT ? b.getCount() : b.getWeight();
+                if (x != y) {
+                    return x > y ? -1 : 1;
+                }
+                return b.getSites() - a.getSites();
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Totals per reason, without caller and callee, the hottest first.
+     */
+    public List<Row> getReasons() {
+        List<Row> result = new ArrayList<Row>(reasons.values());
+        Collections.sort(result, new Comparator<Row>() {
+            public int compare(Row a, Row b) {
+                if (a.getCount() != b.getCount()) {
+                    return a.getCount() > b.getCount() ? -1 : 1;
+                }
+                return b.getSites() - a.getSites();
+            }
+        });
+        return result;
+    }
+
+    public void print(PrintStream out, Order order, int limit) {
+        out.println("Inline failures by reason:");
+        out.printf("%8s %12s  %s\n", "sites", "count", "reason");
+        for (Row row : getReasons()) {
+            out.printf("%8d %12d  %s\n", row.getSites(), row.getCount(), row.getReason());
+        }
+        List<Row> list = getRows(order);
+        out.printf("Inline failures by caller, callee and reason (%d, by %s):\n", list.size(),
+                order.name().toLowerCase());
+        out.printf("%8s %12s %14s  %s\n", "sites", "count", "count*bytes", "caller -> callee: reason");
+        for (Row row : list.subList(0, Math.min(limit, list.size()))) {
+            out.printf("%8d %12d %14d  %s -> %s: %s\n", row.getSites(), row.getCount(), row.getWeight(),
+                    row.getCaller(), row.getCallee(), row.getReason());
+        }
+    }
+}
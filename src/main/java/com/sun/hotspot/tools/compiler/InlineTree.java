@@ -0,0 +1,404 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+import java.util.Arrays;
+
+/**
+ * The inlining tree of one compilation in columnar form.
+ *
+ * Every node is a row of STRIDE ints in one array: parent, first child,
+ * next sibling, bci with the reason code and intrinsic bit, method id,
+ * count, end nodes and the parse_done stamp in milliseconds since the
+ * start of the compilation, absolute ones would overflow an int after 24.8
+ * days of uptime.  Receiver
+ * profiles are rare, so they are kept in a separate sparse table sorted by
+ * node.  A node costs 32 bytes plus its share of the receivers, instead of
+ * a CallSite object with its own list of children.  {@link CallSite} is a
+ * flyweight view of one row.
+ */
+public class InlineTree {
+
+    static final int STRIDE = 8;
+
+    static final int PARENT = 0;
+    static final int FIRST_CHILD = 1;
+    static final int NEXT_SIBLING = 2;
+    static final int BCI_REASON = 3;
+    static final int METHOD = 4;
+    static final int COUNT = 5;
+    static final int END_NODES = 6;
+    static final int STAMP = 7;
+
+    static final int BCI_MASK = 0xffff;
+    static final int REASON_SHIFT = 16;
+    static final int REASON_MASK = 0x7fff;
+    static final int INTRINSIC = 0x80000000;
+    /** the STAMP of a node without parse_done */
+    static final int NO_STAMP = Integer.MIN_VALUE;
+
+    private final SymbolTable symbols;
+    final int[] nodes;
+    final int[] receivers;
+    final String[] receiverNames;
+    /**
+     * Pairs of method id and the interpreter invocation count the task saw
+     * for the method, sorted by method id.  The count changes from task to
+     * task, so it isn't kept on the shared Method.
+     */
+    final int[] iicounts;
+    /** the start of the compilation in milliseconds, what STAMP is relative to */
+    final long stampBase;
+
+    InlineTree(SymbolTable symbols, int[] nodes, int[] receivers, String[] receiverNames, int[] iicounts,
+               long stampBase) {
+        this.symbols = symbols;
+        this.nodes = nodes;
+        this.stampBase = stampBase;
+        this.receivers = receivers;
+        this.receiverNames = receiverNames;
+        this.iicounts = iicounts;
+    }
+
+    SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    public CallSite getRoot() {
+        return new CallSite(this, 0);
+    }
+
+    public CallSite getCallSite(int node) {
+        return new CallSite(this, node);
+    }
+
+    public int size() {
+        return nodes.length / STRIDE;
+    }
+
+    public int getParent(int node) {
+        return nodes[node * STRIDE + PARENT];
+    }
+
+    public int getFirstChild(int node) {
+        return nodes[node * STRIDE + FIRST_CHILD];
+    }
+
+    public int getNextSibling(int node) {
+        return nodes[node * STRIDE + NEXT_SIBLING];
+    }
+
+    public int getChildCount(int node) {
+        int n = 0;
+        for (int child = getFirstChild(node); child >= 0; child = getNextSibling(child)) {
+            n++;
+        }
+        return n;
+    }
+
+    public int getBci(int node) {
+        int bci = nodes[node * STRIDE + BCI_REASON] & BCI_MASK;
+        return bci == BCI_MASK ? -1 : bci;
+    }
+
+    public Reason getReason(int node) {
+        int code = getReasonCode(node);
+        return code == 0 ? null : Reason.forCode(code - 1);
+    }
+
+    /**
+     * The reason as stored next to the bci, 0 stands for none.
+     */
+    static int reasonBits(Reason reason) {
+        if (reason == null) {
+            return 0;
+        }
+        if (reason.getCode() + 1 > REASON_MASK) {
+            throw new InternalError("more than " + REASON_MASK + " distinct reasons: " + reason);
+        }
+        return (reason.getCode() + 1) << REASON_SHIFT;
+    }
+
+    /**
+     * The code of the reason plus one, 0 if there is no reason.  Doesn't
+     * have to look up the reason itself.
+     */
+    int getReasonCode(int node) {
+        return (nodes[node * STRIDE + BCI_REASON] >>> REASON_SHIFT) & REASON_MASK;
+    }
+
+    public boolean isIntrinsic(int node) {
+        return (nodes[node * STRIDE + BCI_REASON] & INTRINSIC) != 0;
+    }
+
+    public int getMethodId(int node) {
+        return nodes[node * STRIDE + METHOD];
+    }
+
+    public Method getMethod(int node) {
+        return symbols.getMethod(getMethodId(node));
+    }
+
+    public int getCount(int node) {
+        return nodes[node * STRIDE + COUNT];
+    }
+
+    public int getEndNodes(int node) {
+        return nodes[node * STRIDE + END_NODES];
+    }
+
+    public double getTimeStamp(int node) {
+        int stamp = nodes[node * STRIDE + STAMP];
+        return stamp == NO_STAMP ? 0 : (stampBase + stamp) / 1000.0;
+    }
+
+    public String getReceiver(int node) {
+        int i = findReceiver(node);
+        return i >= 0 ? receiverNames[i] : null;
+    }
+
+    public int getReceiverCount(int node) {
+        int i = findReceiver(node);
+        return i >= 0 ? receivers[i * 2 + 1] : 0;
+    }
+
+    /**
+     * The interpreter invocation count of the node's method when the task
+     * was compiled, 0 if unknown.
+     */
+    public int getIICount(int node) {
+        int method = getMethodId(node);
+        int low = 0;
+        int high = iicounts.length / 2 - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int m = iicounts[middle * 2];
+            if (m < method) {
+                low = middle + 1;
+            } else if (m > method) {
+                high = middle - 1;
+            } else {
+                return iicounts[middle * 2 + 1];
+            }
+        }
+        return 0;
+    }
+
+    private int findReceiver(int node) {
+        int low = 0;
+        int high = receiverNames.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int n = receivers[middle * 2];
+            if (n < node) {
+                low = middle + 1;
+            } else if (n > node) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Builds the tree of the task being parsed.  The arrays are reused from
+     * task to task and only the final tree is allocated at its exact size.
+     */
+    static class Builder {
+        private int[] nodes = new int[STRIDE * 256];
+        private int[] lastChild = new int[256];
+        private int size;
+        private int[] receivers = new int[32];
+        private String[] receiverNames = new String[16];
+        private int receiverCount;
+        private long[] iicounts = new long[64];
+        private int iicountCount;
+        private long stampBase;
+
+        /**
+         * Starts a new tree, whose root is node 0, for a compilation
+         * starting at the stamp.
+         */
+        void reset(double start) {
+            stampBase = Math.round(start * 1000);
+            size = 0;
+            receiverCount = 0;
+            iicountCount = 0;
+            add(-1, 0, -1, 0);
+        }
+
+        int size() {
+            return size;
+        }
+
+        int add(int parent, int bci, int method, int count) {
+            if (size == lastChild.length) {
+                int[] newNodes = new int[nodes.length * 2];
+                System.arraycopy(nodes, 0, newNodes, 0, nodes.length);
+                nodes = newNodes;
+                int[] newLastChild = new int[lastChild.length * 2];
+                System.arraycopy(lastChild, 0, newLastChild, 0, lastChild.length);
+                lastChild = newLastChild;
+            }
+            int node = size++;
+            int row = node * STRIDE;
+            nodes[row + PARENT] = parent;
+            nodes[row + FIRST_CHILD] = -1;
+            nodes[row + NEXT_SIBLING] = -1;
+            nodes[row + BCI_REASON] = bci & BCI_MASK;
+            nodes[row + METHOD] = method;
+            nodes[row + COUNT] = count;
+            nodes[row + END_NODES] = 0;
+            nodes[row + STAMP] = NO_STAMP;
+            lastChild[node] = -1;
+            if (parent >= 0) {
+                int last = lastChild[parent];
+                if (last < 0) {
+                    nodes[parent * STRIDE + FIRST_CHILD] = node;
+                } else {
+                    nodes[last * STRIDE + NEXT_SIBLING] = node;
+                }
+                lastChild[parent] = node;
+            }
+            return node;
+        }
+
+        int getMethod(int node) {
+            return nodes[node * STRIDE + METHOD];
+        }
+
+        void setMethod(int node, int method) {
+            nodes[node * STRIDE + METHOD] = method;
+        }
+
+        /**
+         * Returns the child fromEnd positions from the end, -1 being the
+         * last child, or -1 if there is no such child.
+         */
+        int last(int node, int fromEnd) {
+            if (fromEnd == -1) {
+                return lastChild[node];
+            }
+            int index = childCount(node) + fromEnd;
+            if (index < 0) {
+                return -1;
+            }
+            int child = nodes[node * STRIDE + FIRST_CHILD];
+            for (int i = 0; i < index; i++) {
+                child = nodes[child * STRIDE + NEXT_SIBLING];
+            }
+            return child;
+        }
+
+        int childCount(int node) {
+            int n = 0;
+            for (int child = nodes[node * STRIDE + FIRST_CHILD]; child >= 0; child = nodes[child * STRIDE + NEXT_SIBLING]) {
+                n++;
+            }
+            return n;
+        }
+
+        void setReason(int node, Reason reason) {
+            int row = node * STRIDE + BCI_REASON;
+            nodes[row] = (nodes[row] & ~(REASON_MASK << REASON_SHIFT)) | reasonBits(reason);
+        }
+
+        void setIntrinsic(int node) {
+            nodes[node * STRIDE + BCI_REASON] |= INTRINSIC;
+        }
+
+        void setEndNodes(int node, int endNodes) {
+            nodes[node * STRIDE + END_NODES] = endNodes;
+        }
+
+        void setTimeStamp(int node, double stamp) {
+            nodes[node * STRIDE + STAMP] = (int) (Math.round(stamp * 1000) - stampBase);
+        }
+
+        /**
+         * Receivers have to be added in node order.
+         */
+        void setReceiver(int node, String receiver, int count) {
+            if (receiverCount == receiverNames.length) {
+                int[] newReceivers = new int[receivers.length * 2];
+                System.arraycopy(receivers, 0, newReceivers, 0, receivers.length);
+                receivers = newReceivers;
+                String[] newNames = new String[receiverNames.length * 2];
+                System.arraycopy(receiverNames, 0, newNames, 0, receiverNames.length);
+                receiverNames = newNames;
+            }
+            receivers[receiverCount * 2] = node;
+            receivers[receiverCount * 2 + 1] = count;
+            receiverNames[receiverCount++] = receiver;
+        }
+
+        void setIICount(int method, int iicount) {
+            if (iicountCount == iicounts.length) {
+                long[] newIICounts = new long[iicounts.length * 2];
+                System.arraycopy(iicounts, 0, newIICounts, 0, iicounts.length);
+                iicounts = newIICounts;
+            }
+            iicounts[iicountCount++] = ((long) method << 32) | (iicount & 0xffffffffL);
+        }
+
+        InlineTree build(SymbolTable symbols) {
+            int[] n = new int[size * STRIDE];
+            System.arraycopy(nodes, 0, n, 0, n.length);
+            int[] r = new int[receiverCount * 2];
+            System.arraycopy(receivers, 0, r, 0, r.length);
+            String[] names = new String[receiverCount];
+            System.arraycopy(receiverNames, 0, names, 0, receiverCount);
+            return new InlineTree(symbols, n, r, names, sortedIICounts(), stampBase);
+        }
+
+        /**
+         * The method and count pairs by method id, a method that was
+         * described more than once keeps its last count.
+         */
+        private int[] sortedIICounts() {
+            long[] sorted = new long[iicountCount];
+            System.arraycopy(iicounts, 0, sorted, 0, iicountCount);
+            // the index keeps the order of equal methods stable
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = (sorted[i] & 0xffffffff00000000L) | i;
+            }
+            Arrays.sort(sorted);
+            int[] result = new int[sorted.length * 2];
+            int n = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                int method = (int) (sorted[i] >>> 32);
+                int iicount = (int) iicounts[(int) sorted[i]];
+                if (n > 0 && result[(n - 1) * 2] == method) {
+                    n--;
+                }
+                result[n * 2] = method;
+                result[n * 2 + 1] = iicount;
+                n++;
+            }
+            return n * 2 == result.length ? result : Arrays.copyOf(result, n * 2);
+        }
+    }
+}
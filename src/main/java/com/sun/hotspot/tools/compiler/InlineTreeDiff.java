@@ -0,0 +1,444 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Compares the inlining decisions of two logs.  Compilations are matched by
+ * holder, name, signature and OSR bci, of several compilations of a
+ * method the last successful one is compared.  Every node of an
+ * {@link InlineTree} gets a hash of its method, bci, reason, receiver and
+ * the hashes of its children, so identical subtrees are recognized by
+ * comparing two longs and only the paths to the differences are walked.
+ *
+ * The compilations can be added from a {@link LogEventListener} while
+ * parsing, only one per method and OSR bci is kept, so two logs of any
+ * size can be compared as long as their latest compilations fit in memory.
+ * Call counts differ from run to run and are not compared.
+ */
+public class InlineTreeDiff {
+
+    public enum Kind {
+        /** the call is inlined now, it failed or wasn't there before */
+        INLINED,
+        /** the call fails to inline now, it was inlined, failed for another reason or wasn't there before */
+        FAILED,
+        /** the profiled receiver of the call changed */
+        RECEIVER,
+        /** the call isn't there any more */
+        REMOVED
+    }
+
+    public static class Change {
+        private final Kind kind;
+        private final CallSite before;
+        private final CallSite after;
+
+        Change(Kind kind, CallSite before, CallSite after) {
+            this.kind = kind;
+            this.before = before;
+            this.after = after;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * The call site in the first log, null if it is new.
+         */
+        public CallSite getBefore() {
+            return before;
+        }
+
+        /**
+         * The call site in the second log, null if it was removed.
+         */
+        public CallSite getAfter() {
+            return after;
+        }
+
+        public CallSite getCallSite() {
+            return after != null ? after : before;
+        }
+    }
+
+    /**
+     * The compilations of the same method and OSR bci in both logs.
+     */
+    public static class Pair {
+        private final String key;
+        private final Compilation before;
+        private final Compilation after;
+        private List<Change> changes;
+
+        Pair(String key, Compilation before, Compilation after) {
+            this.key = key;
+            this.before = before;
+            this.after = after;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public Compilation getBefore() {
+            return before;
+        }
+
+        public Compilation getAfter() {
+            return after;
+        }
+
+        /**
+         * The changes in tree order, empty if both trees are identical.
+         */
+        public List<Change> getChanges() {
+            return changes;
+        }
+    }
+
+    static final int THRESHOLD = 256;
+
+    private final Map<String, Compilation> before = new HashMap<String, Compilation>();
+    private final Map<String, Compilation> after = new HashMap<String, Compilation>();
+    private List<Pair> pairs;
+
+    public static InlineTreeDiff of(List<LogEvent> before, List<LogEvent> after) {
+        InlineTreeDiff diff = new InlineTreeDiff();
+        for (LogEvent e : before) {
+            if (e instanceof Compilation) {
+                diff.addBefore((Compilation) e);
+            }
+        }
+        for (LogEvent e : after) {
+            if (e instanceof Compilation) {
+                diff.addAfter((Compilation) e);
+            }
+        }
+        return diff;
+    }
+
+    public void addBefore(Compilation c) {
+        add(before, c);
+    }
+
+    public void addAfter(Compilation c) {
+        add(after, c);
+    }
+
+    /**
+     * A listener keeping the compilations of the first log.
+     */
+    public LogEventListener before() {
+        return new Side(before);
+    }
+
+    /**
+     * A listener keeping the compilations of the second log.
+     */
+    public LogEventListener after() {
+        return new Side(after);
+    }
+
+    private void add(Map<String, Compilation> side, Compilation c) {
+        if (c.getMethod() == null || c.getInlineTree() == null) {
+            return;
+        }
+        pairs = null;
+        Method m = c.getMethod();
+        // not the bytes, they change with the JDK
+        String key = m.getHolder().replace('/', '.') + "::" + m.getName() + m.getSignature()
+                + (c.isOsr() ? " osr@" + c.getOsr_bci() : "");
+        Compilation existing = side.get(key);
+        if (existing == null || isLater(c, existing)) {
+            side.put(key, c);
+        }
+    }
+
+    private static boolean isLater(Compilation c, Compilation existing) {
+        boolean succeeded = c.getFailureReason() == null;
+        if (succeeded != (existing.getFailureReason() == null)) {
+            return succeeded;
+        }
+        return c.getStart() >= existing.getStart();
+    }
+
+    /**
+     * Compares the trees of the compilations found in both logs, in
+     * parallel when there are many.  The pairs are sorted by method.
+     */
+    public List<Pair> getPairs() {
+        if (pairs == null) {
+            TreeMap<String, Compilation> sorted = new TreeMap<String, Compilation>(before);
+            List<Pair> result = new ArrayList<Pair>();
+            for (Map.Entry<String, Compilation> entry : sorted.entrySet()) {
+                Compilation c = after.get(entry.getKey());
+                if (c != null) {
+                    result.add(new Pair(entry.getKey(), entry.getValue(), c));
+                }
+            }
+            Part part = new Part(result, 0, result.size());
+            if (result.size() < THRESHOLD) {
+                part.compute();
+            } else {
+                EventStore.pool().invoke(part);
+            }
+            pairs = result;
+        }
+        return Collections.unmodifiableList(pairs);
+    }
+
+    /**
+     * The pairs whose trees differ.
+     */
+    public List<Pair> getChangedPairs() {
+        List<Pair> changed = new ArrayList<Pair>();
+        for (Pair pair : getPairs()) {
+            if (!pair.changes.isEmpty()) {
+                changed.add(pair);
+            }
+        }
+        return changed;
+    }
+
+    public int getOnlyBefore() {
+        return before.size() - getPairs().size();
+    }
+
+    public int getOnlyAfter() {
+        return after.size() - getPairs().size();
+    }
+
+    public void print(PrintStream out) {
+        List<Pair> changed = getChangedPairs();
+        Map<Kind, Integer> totals = new EnumMap<Kind, Integer>(Kind.class);
+        for (Kind kind : Kind.values()) {
+            totals.put(kind, 0);
+        }
+        for (Pair pair : changed) {
+            for (Change change : pair.changes) {
+                totals.put(change.kind, totals.get(change.kind) + 1);
+            }
+        }
+        out.printf("%d compilations in both logs, %d with different inlining, %d only in the first, %d only in the second\n",
+                getPairs().size(), changed.size(), getOnlyBefore(), getOnlyAfter());
+        out.printf("%d newly inlined, %d newly failed, %d receivers changed, %d removed\n",
+                totals.get(Kind.INLINED), totals.get(Kind.FAILED), totals.get(Kind.RECEIVER), totals.get(Kind.REMOVED));
+        for (Pair pair : changed) {
+            out.println();
+            out.println(pair.key);
+            for (Change change : pair.changes) {
+                CallSite site = change.getCallSite();
+                CallSite caller = site.getParent();
+                out.printf("  %-8s %s @ %d in %s", change.kind.name().toLowerCase(), site.getMethod(), site.getBci(),
+                        caller != null ? caller.getMethod() : "?");
+                switch (change.kind) {
+                    case INLINED:
+                        if (change.before != null) {
+                            out.print(", was " + change.before.getReason());
+                        }
+                        break;
+                    case FAILED:
+                        out.print(": " + site.getReason());
+                        if (change.before != null) {
+                            out.print(change.before.getReason() != null ? ", was " + change.before.getReason() : ", was inlined");
+                        }
+                        break;
+                    case RECEIVER:
+                        out.printf(": %s, was %s", change.after.getReceiver(), change.before.getReceiver());
+                        break;
+                    default:
+                        break;
+                }
+                out.println();
+            }
+        }
+    }
+
+    class Side implements LogEventListener {
+        private final Map<String, Compilation> compilations;
+
+        Side(Map<String, Compilation> compilations) {
+            this.compilations = compilations;
+        }
+
+        public void onCompilation(Compilation compilation) {
+            add(compilations, compilation);
+        }
+
+        public void onNMethod(NMethod nmethod) {
+        }
+
+        public void onUncommonTrap(UncommonTrapEvent trap) {
+        }
+
+        public void onMakeNotEntrant(MakeNotEntrantEvent event) {
+        }
+    }
+
+    /**
+     * The subtree hashes of one tree, and the hashes of the methods for
+     * matching children.
+     */
+    static class Hashes {
+        final InlineTree tree;
+        final long[] methods;
+        final long[] subtrees;
+
+        Hashes(InlineTree tree, Map<Method, Long> methodHashes) {
+            this.tree = tree;
+            int n = tree.size();
+            methods = new long[n];
+            subtrees = new long[n];
+            // children are always added after their parent, so walking
+            // backwards sees every child before its parent
+            for (int node = n - 1; node >= 0; node--) {
+                Method m = tree.getMethod(node);
+                Long h = methodHashes.get(m);
+                if (h == null) {
+                    h = mix(mix(mix(Objects.hashCode(m.getHolder())) + Objects.hashCode(m.getName()))
+                            + Objects.hashCode(m.getArguments()));
+                    methodHashes.put(m, h);
+                }
+                methods[node] = h;
+                long hash = mix(h + tree.getBci(node));
+                hash = mix(hash + tree.getReasonCode(node) * 2 + (tree.isIntrinsic(node) ? 1 : 0));
+                hash = mix(hash + Objects.hashCode(tree.getReceiver(node)));
+                for (int child = tree.getFirstChild(node); child >= 0; child = tree.getNextSibling(child)) {
+                    hash = mix(hash * 31 + subtrees[child]);
+                }
+                subtrees[node] = hash;
+            }
+        }
+
+        boolean sameCall(int node, Hashes other, int otherNode) {
+            return methods[node] == other.methods[otherNode] && tree.getBci(node) == other.tree.getBci(otherNode);
+        }
+    }
+
+    /**
+     * The finalizer of SplitMix64.
+     */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    static List<Change> compare(InlineTree before, InlineTree after, Map<Method, Long> methodHashes) {
+        Hashes a = new Hashes(before, methodHashes);
+        Hashes b = new Hashes(after, methodHashes);
+        List<Change> changes = new ArrayList<Change>();
+        compare(a, 0, b, 0, changes);
+        return changes;
+    }
+
+    private static void compare(Hashes a, int x, Hashes b, int y, List<Change> changes) {
+        if (a.subtrees[x] == b.subtrees[y]) {
+            return;
+        }
+        InlineTree before = a.tree;
+        InlineTree after = b.tree;
+        if (x != 0) {
+            int was = before.getReasonCode(x);
+            int now = after.getReasonCode(y);
+            if (!Objects.equals(before.getReceiver(x), after.getReceiver(y))) {
+                changes.add(new Change(Kind.RECEIVER, before.getCallSite(x), after.getCallSite(y)));
+            }
+            if (was != now) {
+                changes.add(new Change(now == 0 ? Kind.INLINED : Kind.FAILED, before.getCallSite(x), after.getCallSite(y)));
+                if ((was == 0) != (now == 0)) {
+                    // what is inlined below the call is new or gone as a whole
+                    return;
+                }
+            }
+        }
+        // calls are matched by method and bci, repeated ones in order
+        List<Integer> unmatched = new ArrayList<Integer>();
+        for (int child = before.getFirstChild(x); child >= 0; child = before.getNextSibling(child)) {
+            unmatched.add(child);
+        }
+        for (int child = after.getFirstChild(y); child >= 0; child = after.getNextSibling(child)) {
+            int match = -1;
+            for (int i = 0; i < unmatched.size(); i++) {
+                if (a.sameCall(unmatched.get(i), b, child)) {
+                    match = unmatched.remove(i);
+                    break;
+                }
+            }
+            if (match >= 0) {
+                compare(a, match, b, child, changes);
+            } else {
+                Kind kind = after.getReasonCode(child) == 0 ? Kind.INLINED : Kind.FAILED;
+                changes.add(new Change(kind, null, after.getCallSite(child)));
+            }
+        }
+        for (int child : unmatched) {
+            changes.add(new Change(Kind.REMOVED, before.getCallSite(child), null));
+        }
+    }
+
+    static class Part extends RecursiveTask<Void> {
+        private final List<Pair> pairs;
+        private final int from;
+        private final int to;
+
+        Part(List<Pair> pairs, int from, int to) {
+            this.pairs = pairs;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Void compute() {
+            if (to - from < THRESHOLD || getPool() == null) {
+                Map<Method, Long> methodHashes = new IdentityHashMap<Method, Long>();
+                for (int i = from; i < to; i++) {
+                    Pair pair = pairs.get(i);
+                    pair.changes = compare(pair.before.getInlineTree(), pair.after.getInlineTree(), methodHashes);
+                }
+                return null;
+            }
+            int mid = (from + to) >>> 1;
+            Part left = new Part(pairs, from, mid);
+            left.fork();
+            new Part(pairs, mid, to).compute();
+            left.join();
+            return null;
+        }
+    }
+}
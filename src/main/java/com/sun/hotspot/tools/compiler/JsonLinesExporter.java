@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes every event as soon as it is parsed as one JSON object per line.
+ * A compilation carries its phases and its whole inlining tree, nested by
+ * calls.  Every object has the log it came from, methods are written as
+ * holder, name and signature.  Nothing is kept once it is written, so a
+ * log of any size can be exported.  An IOException of the writer is rethrown wrapped in a
+ * RuntimeException, which ends the parse.
+ */
+public class JsonLinesExporter implements Exporter {
+
+    private final Writer out;
+    private final StringBuilder line = new StringBuilder();
+    private String log = "";
+
+    /**
+     * The writer should be buffered.
+     */
+    public JsonLinesExporter(Writer out) {
+        this.out = out;
+    }
+
+    public void setLog(String log) {
+        this.log = log;
+    }
+
+    public void onCompilation(Compilation c) {
+        begin("compilation");
+        field("compile_id", c.getId());
+        field("kind", c.isOsr() ? "osr" : "normal");
+        if (c.isOsr()) {
+            field("osr_bci", c.getOsr_bci());
+        }
+        if (c.getMethod() != null) {
+            method(c.getMethod());
+            field("bytes", c.getMethod().getBytes());
+        } else if (c.getSpecial() != null) {
+            field("special", c.getSpecial());
+        }
+        field("start", c.getStart());
+        field("end", c.getEnd());
+        field("attempts", c.getAttempts());
+        field("icount", c.getIcount());
+        field("bcount", c.getBcount());
+        if (c.getFailureReason() != null) {
+            field("failure", c.getFailureReason());
+        }
+        if (c.getNMethod() != null) {
+            field("nmethod_address", c.getNMethod().getAddress());
+            field("nmethod_size", c.getNMethod().getSize());
+        }
+        line.append(",\"phases\":[");
+        List<Phase> phases = c.getPhases();
+        for (int i = 0; i < phases.size(); i++) {
+            Phase phase = phases.get(i);
+            line.append(i > 0 ? ",{" : "{");
+            name("name").append(string(phase.getName()));
+            field("start", phase.getStart());
+            field("end", phase.getEnd());
+            field("start_nodes", phase.getStartNodes());
+            field("end_nodes", phase.getEndNodes());
+            line.append('}');
+        }
+        line.append(']');
+        if (c.getInlineTree() != null) {
+            line.append(",\"inlining\":");
+            callSite(c.getCall());
+        }
+        end();
+    }
+
+    private void callSite(CallSite site) {
+        line.append("{");
+        name("bci").append(site.getBci());
+        method(site.getMethod());
+        field("bytes", site.getMethod().getBytes());
+        field("count", site.getCount());
+        if (site.getReason() != null) {
+            field("reason", site.getReason().getText());
+        }
+        if (site.isIntrinsic()) {
+            line.append(",\"intrinsic\":true");
+        }
+        if (site.getReceiver() != null) {
+            field("receiver", site.getReceiver());
+            field("receiver_count", site.getReceiverCount());
+        }
+        if (site.getEndNodes() > 0) {
+            field("end_nodes", site.getEndNodes());
+            field("time", site.getTimeStamp());
+        }
+        List<CallSite> calls = site.getCalls();
+        if (calls != null && !calls.isEmpty()) {
+            line.append(",\"calls\":[");
+            for (int i = 0; i < calls.size(); i++) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                callSite(calls.get(i));
+            }
+            line.append(']');
+        }
+        line.append('}');
+    }
+
+    public void onNMethod(NMethod nm) {
+        begin("nmethod");
+        field("compile_id", nm.getId());
+        field("start", nm.getStart());
+        field("address", nm.getAddress());
+        field("size", nm.getSize());
+        if (nm.getCompiler() != null) {
+            field("compiler", nm.getCompiler());
+        }
+        end();
+    }
+
+    public void onUncommonTrap(UncommonTrapEvent trap) {
+        begin("uncommon_trap");
+        field("compile_id", trap.getId());
+        field("start", trap.getStart());
+        field("reason", String.valueOf(trap.getReason()));
+        field("action", String.valueOf(trap.getAction()));
+        field("count", trap.getCount());
+        line.append(",\"jvms\":[");
+        for (int i = 0; i < trap.getFrameCount(); i++) {
+            line.append(i > 0 ? ",{" : "{");
+            name("bci").append(trap.getFrameBci(i));
+            method(trap.getFrameMethod(i));
+            line.append('}');
+        }
+        line.append(']');
+        end();
+    }
+
+    public void onMakeNotEntrant(MakeNotEntrantEvent event) {
+        begin("make_not_entrant");
+        field("compile_id", event.getId());
+        field("start", event.getStart());
+        line.append(",\"zombie\":").append(event.isZombie());
+        end();
+    }
+
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void begin(String type) {
+        line.setLength(0);
+        line.append("{\"type\":\"").append(type).append('"');
+        field("log", log);
+    }
+
+    private void end() {
+        line.append("}\n");
+        try {
+            out.append(line);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private StringBuilder name(String name) {
+        return line.append('"').append(name).append("\":");
+    }
+
+    private void method(Method m) {
+        field("holder", m.getHolder().replace('/', '.'));
+        field("name", m.getName());
+        field("signature", m.getSignature());
+    }
+
+    private void field(String name, String value) {
+        line.append(',');
+        name(name).append(string(value));
+    }
+
+    private void field(String name, long value) {
+        line.append(',');
+        name(name).append(value);
+    }
+
+    private void field(String name, double value) {
+        line.append(',');
+        name(name).append(round(value));
+    }
+
+    /**
+     * Rounds seconds to the milliseconds the log has, what's beyond them
+     * is only noise of the arithmetic on the stamps.
+     */
+    static double round(double seconds) {
+        return Math.round(seconds * 1000) / 1000.0;
+    }
+
+    static String string(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2);
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -25,7 +25,6 @@
 package com.sun.hotspot.tools.compiler;
 
 import java.io.*;
-import java.util.regex.*;
 
 /**
  * This class is a filter class to deal with malformed XML that used
@@ -55,40 +54,93 @@ class LogCleanupReader extends Reader {
         reader = r;
     }
 
-    static final private Matcher pattern = Pattern.compile(".+ compile_id='[0-9]+'.*( compile_id='[0-9]+)").matcher("");
-    static final private Matcher pattern2 = Pattern.compile("' (C[12]) compile_id=").matcher("");
-    static final private Matcher pattern3 = Pattern.compile("'(destroy_vm)/").matcher("");
+    private static final char[] COMPILE_ID = " compile_id=".toCharArray();
+    private static final char[] DESTROY_VM = "'destroy_vm/".toCharArray();
 
+    /**
+     * Repairs the current line in place.  Well formed lines are recognized
+     * by a plain scan of the line buffer, without allocating anything.
+     */
     private void fill() throws IOException {
         rawFill();
         if (length != -1) {
-            boolean changed = false;
-            String s = new String(line, 0, length);
-            String orig = s;
-
-            pattern2.reset(s);
-            if (pattern2.find()) {
-                s = s.substring(0, pattern2.start(1)) + s.substring(pattern2.end(1) + 1);
-                changed = true;
+            int first = indexOf(COMPILE_ID, 0);
+            if (first >= 0) {
+                // ' C1 compile_id= or ' C2 compile_id=: drop the compiler name
+                for (int i = first; i >= 0; i = indexOf(COMPILE_ID, i + 1)) {
+                    if (i >= 4 && line[i - 4] == '\'' && line[i - 3] == ' ' && line[i - 2] == 'C' &&
+                        (line[i - 1] == '1' || line[i - 1] == '2')) {
+                        remove(i - 2, i + 1);
+                        break;
+                    }
+                }
+                removeDuplicateCompileId();
             }
 
-            pattern.reset(s);
-            if (pattern.lookingAt()) {
-                s = s.substring(0, pattern.start(1)) + s.substring(pattern.end(1) + 1);
-                changed = true;
+            int destroy = indexOf(DESTROY_VM, 0);
+            if (destroy >= 0) {
+                remove(destroy + 1, destroy + DESTROY_VM.length - 1);
             }
+        }
+    }
 
-            pattern3.reset(s);
-            if (pattern3.find()) {
-                s = s.substring(0, pattern3.start(1)) + s.substring(pattern3.end(1));
-                changed = true;
+    /**
+     * If a line has a complete compile_id='nnn' attribute followed by
+     * another compile_id='nnn, the last of them is dropped together with
+     * the character following it.
+     */
+    private void removeDuplicateCompileId() {
+        int firstEnd = -1;
+        int last = -1;
+        for (int i = indexOf(COMPILE_ID, 1); i >= 0; i = indexOf(COMPILE_ID, i + 1)) {
+            int end = compileIdEnd(i);
+            if (end < 0) {
+                continue;
+            }
+            if (firstEnd >= 0 && firstEnd < i) {
+                last = i;
             }
+            if (firstEnd < 0 && end < length && line[end] == '\'') {
+                firstEnd = end;
+            }
+        }
+        if (last >= 0) {
+            remove(last, Math.min(compileIdEnd(last) + 1, length));
+        }
+    }
 
-            if (changed) {
-                s.getChars(0, s.length(), line, 0);
-                length = s.length();
+    /**
+     * Returns the end of the digits of the compile_id at i, or -1 if there
+     * are none.
+     */
+    private int compileIdEnd(int i) {
+        int start = i + COMPILE_ID.length + 1;
+        if (start > length || line[start - 1] != '\'') {
+            return -1;
+        }
+        int end = start;
+        while (end < length && line[end] >= '0' && line[end] <= '9') {
+            end++;
+        }
+        return end > start ? end : -1;
+    }
+
+    private int indexOf(char[] token, int from) {
+        outer:
+        for (int i = from; i <= length - token.length; i++) {
+            for (int j = 0; j < token.length; j++) {
+                if (line[i + j] != token[j]) {
+                    continue outer;
+                }
             }
+            return i;
         }
+        return -1;
+    }
+
+    private void remove(int start, int end) {
+        System.arraycopy(line, end, line, start, length - end);
+        length -= end - start;
     }
 
     private void rawFill() throws IOException {
@@ -143,9 +195,7 @@ class LogCleanupReader extends Reader {
                 return;
             }
             if (bufferOffset != bufferCount) {
-                System.out.println(bufferOffset);
-                System.out.println(bufferCount);
-                throw new InternalError("how did we get here");
+                throw new InternalError("how did we get here: " + bufferOffset + " of " + bufferCount);
             }
             // load more data and try again.
             bufferCount = reader.read(buffer, 0, buffer.length);
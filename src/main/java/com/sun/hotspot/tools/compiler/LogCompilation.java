@@ -29,7 +29,11 @@
 
 package com.sun.hotspot.tools.compiler;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
+import java.io.Writer;
 import java.util.*;
 import org.xml.sax.*;
 import org.xml.sax.helpers.*;
@@ -37,36 +41,127 @@ import org.xml.sax.helpers.*;
 public class LogCompilation extends DefaultHandler implements ErrorHandler, Constants {
 
     public static void usage(int exitcode) {
-        System.out.println("Usage: LogCompilation [ -v ] [ -c ] [ -s ] [ -e | -N ] file1 ...");
+        System.out.println("Usage: LogCompilation [ -v ] [ -c ] [ -C ] [ -s ] [ -e | -N | -I | -u | -f ] file1 ...");
         System.out.println("  -c:   clean up malformed 1.5 xml");
+        System.out.println("  -C:   keep a binary snapshot next to the file and load it when unchanged");
         System.out.println("  -i:   print inlining decisions");
         System.out.println("  -S:   print compilation statistics");
+        System.out.println("  -A:   print compile time, size and node percentiles by method, holder, package,");
+        System.out.println("        compiler, osr and phase (top 25 groups each)");
+        System.out.println("  -T:   print the code cache occupancy over time as CSV");
+        System.out.println("  -K:   print the code cache at its peak: largest nmethods and free gaps");
+        System.out.println("  -D:   print uncommon traps by site, deoptimization storms and recompile loops");
+        System.out.println("  -F:   print failed inlines by caller, callee and reason, hottest first");
+        System.out.println("  -W:   like -F, but hottest by invocation count * callee bytes");
+        System.out.println("  -R:   print recompilation chains per method and the compile time wasted");
+        System.out.println("  -J:   export the events as JSON Lines, one object per line");
+        System.out.println("  -X dir: export the events as CSV tables into the directory");
+        System.out.println("  -G weight: print the inlining trees as collapsed stacks for flame graphs, weighted");
+        System.out.println("        by bytes, nodes, time (parse microseconds) or count");
+        System.out.println("  -d:   compare the inlining of two logs, given as file1 file2");
         System.out.println("  -s:   sort events by start time");
         System.out.println("  -e:   sort events by elapsed time");
         System.out.println("  -N:   sort events by name and start");
+        System.out.println("  -I:   sort events by compile id and start");
+        System.out.println("  -u:   print events, or the -S statistics, unsorted, in file order, as they are parsed");
+        System.out.println("  -f:   follow a growing file and print events as they are appended, until the VM is done");
+        System.out.println("  -P:   parse the file in parallel on all cores");
+        System.out.println("  -m:   parse the memory mapped file with the byte level tokenizer");
         System.exit(exitcode);
     }
 
     public static void main(String[] args) throws Exception {
-        Comparator<LogEvent> defaultSort = LogParser.sortByStart;
+        EventStore.Order order = EventStore.Order.START;
         boolean statistics = false;
+        boolean aggregates = false;
+        boolean timeline = false;
+        boolean codeCache = false;
+        boolean traps = false;
+        boolean inlineFailures = false;
+        InlineFailures.Order failuresOrder = InlineFailures.Order.COUNT;
+        boolean chains = false;
+        boolean diff = false;
+        boolean json = false;
+        String csv = null;
+        CollapsedStacks.Weight stacks = null;
         boolean printInlining = false;
         boolean cleanup = false;
+        boolean streaming = false;
+        boolean parallel = false;
+        boolean mapped = false;
+        boolean cached = false;
+        boolean follow = false;
         int index = 0;
 
         while (args.length > index) {
             if (args[index].equals("-e")) {
-                defaultSort = LogParser.sortByElapsed;
+                order = EventStore.Order.ELAPSED;
                 index++;
-            } else if (args[index].equals("-n")) {
-                defaultSort = LogParser.sortByNameAndStart;
+            } else if (args[index].equals("-N") || args[index].equals("-n")) {
+                order = EventStore.Order.NAME_AND_START;
+                index++;
+            } else if (args[index].equals("-I")) {
+                order = EventStore.Order.COMPILE_ID;
                 index++;
             } else if (args[index].equals("-s")) {
-                defaultSort = LogParser.sortByStart;
+                order = EventStore.Order.START;
+                index++;
+            } else if (args[index].equals("-u")) {
+                streaming = true;
+                index++;
+            } else if (args[index].equals("-f")) {
+                follow = true;
+                index++;
+            } else if (args[index].equals("-P")) {
+                parallel = true;
+                index++;
+            } else if (args[index].equals("-m")) {
+                mapped = true;
+                index++;
+            } else if (args[index].equals("-C")) {
+                cached = true;
                 index++;
             } else if (args[index].equals("-c")) {
                 cleanup = true;
                 index++;
+            } else if (args[index].equals("-A")) {
+                aggregates = true;
+                index++;
+            } else if (args[index].equals("-T")) {
+                timeline = true;
+                index++;
+            } else if (args[index].equals("-J")) {
+                json = true;
+                index++;
+            } else if (args[index].equals("-X") && index + 1 < args.length) {
+                csv = args[index + 1];
+                index += 2;
+            } else if (args[index].equals("-G") && index + 1 < args.length) {
+                try {
+                    stacks = CollapsedStacks.Weight.valueOf(args[index + 1].toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    usage(1);
+                }
+                index += 2;
+            } else if (args[index].equals("-d")) {
+                diff = true;
+                index++;
+            } else if (args[index].equals("-R")) {
+                chains = true;
+                index++;
+            } else if (args[index].equals("-F")) {
+                inlineFailures = true;
+                index++;
+            } else if (args[index].equals("-W")) {
+                inlineFailures = true;
+                failuresOrder = InlineFailures.Order.WEIGHT;
+                index++;
+            } else if (args[index].equals("-D")) {
+                traps = true;
+                index++;
+            } else if (args[index].equals("-K")) {
+                codeCache = true;
+                index++;
             } else if (args[index].equals("-S")) {
                 statistics = true;
                 index++;
@@ -84,14 +179,97 @@ public class LogCompilation extends DefaultHandler implements ErrorHandler, Cons
             usage(1);
         }
 
+        if (diff) {
+            if (args.length - index != 2) {
+                usage(1);
+            }
+            // only the latest compilation of each method is kept while parsing
+            InlineTreeDiff inlineTreeDiff = new InlineTreeDiff();
+            LogEventListener[] sides = {inlineTreeDiff.before(), inlineTreeDiff.after()};
+            for (LogEventListener side : sides) {
+                if (mapped) {
+                    LogParser.parseMapped(args[index], side);
+                } else {
+                    LogParser.parse(args[index], cleanup, side);
+                }
+                index++;
+            }
+            inlineTreeDiff.print(System.out);
+            return;
+        }
+
+        if (json) {
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out, "UTF-8"), 1 << 16);
+            export(new JsonLinesExporter(out), args, index, cleanup, mapped);
+            return;
+        }
+        if (stacks != null) {
+            // only the distinct stacks are kept
+            CollapsedStacks collapsed = new CollapsedStacks(stacks);
+            for (; index < args.length; index++) {
+                if (mapped) {
+                    LogParser.parseMapped(args[index], collapsed);
+                } else {
+                    LogParser.parse(args[index], cleanup, collapsed);
+                }
+            }
+            collapsed.print(System.out);
+            return;
+        }
+        if (csv != null) {
+            export(new CsvExporter(new File(csv)), args, index, cleanup, mapped);
+            return;
+        }
+
         while (index < args.length) {
-            ArrayList<LogEvent> events = LogParser.parse(args[index], cleanup);
+            if (follow) {
+                LogParser.follow(args[index], cleanup, new EventPrinter(System.out, printInlining));
+                index++;
+                continue;
+            }
+            if (streaming) {
+                // statistics come in file order then, not sorted by start
+                StatisticsPrinter statisticsPrinter = statistics ? new StatisticsPrinter(System.out) : null;
+                LogEventListener printer = statistics ? statisticsPrinter : new EventPrinter(System.out, printInlining);
+                if (mapped) {
+                    LogParser.parseMapped(args[index], printer);
+                } else {
+                    LogParser.parse(args[index], cleanup, printer);
+                }
+                if (statistics) {
+                    statisticsPrinter.printSummary();
+                }
+                index++;
+                continue;
+            }
+
+            ArrayList<LogEvent> events;
+            if (cached) {
+                events = LogParser.parseCached(args[index], cleanup);
+            } else if (mapped) {
+                events = LogParser.parseMapped(args[index]);
+            } else if (parallel) {
+                events = LogParser.parseParallel(args[index], cleanup);
+            } else {
+                events = LogParser.parse(args[index], cleanup);
+            }
 
-            if (statistics) {
+            if (chains) {
+                new RecompilationChains(events).print(System.out, 20);
+            } else if (inlineFailures) {
+                InlineFailures.of(events).print(System.out, failuresOrder, 30);
+            } else if (traps) {
+                new TrapAnalysis(events, 1.0, 10).print(System.out, 20);
+            } else if (timeline) {
+                new CodeCacheTimeline(events).printCsv(System.out);
+            } else if (codeCache) {
+                new CodeCacheTimeline(events).printSummary(System.out, 10);
+            } else if (aggregates) {
+                CompileStatistics.of(events).print(System.out, 25);
+            } else if (statistics) {
                 printStatistics(events, System.out);
             } else {
-                Collections.sort(events, defaultSort);
-                for (LogEvent c : events) {
+                for (LogEvent c : new EventStore(events).sorted(order)) {
                     if (printInlining && c instanceof Compilation) {
                         Compilation comp = (Compilation)c;
                         comp.print(System.out, true);
@@ -104,73 +282,151 @@ public class LogCompilation extends DefaultHandler implements ErrorHandler, Cons
         }
     }
 
-    public static void printStatistics(ArrayList<LogEvent> events, PrintStream out) {
-        long cacheSize = 0;
-        long maxCacheSize = 0;
-        int nmethodsCreated = 0;
-        int nmethodsLive = 0;
-        int[] attempts = new int[32];
-        double regallocTime = 0;
-        int maxattempts = 0;
-
-        LinkedHashMap<String, Double> phaseTime = new LinkedHashMap<String, Double>(7);
-        LinkedHashMap<String, Integer> phaseNodes = new LinkedHashMap<String, Integer>(7);
-        double elapsed = 0;
+    /**
+     * Writes the events of the files as they are parsed, nothing is kept.
+     * The rows are marked with the file name, a file given again gets its
+     * position appended so its rows can still be told apart.
+     */
+    static void export(Exporter exporter, String[] files, int index, boolean cleanup, boolean mapped)
+            throws Exception {
+        Set<String> logs = new HashSet<String>();
+        try (Exporter out = exporter) {
+            for (; index < files.length; index++) {
+                out.setLog(logs.add(files[index]) ? files[index] : files[index] + "#" + index);
+                if (mapped) {
+                    LogParser.parseMapped(files[index], out);
+                } else {
+                    LogParser.parse(files[index], cleanup, out);
+                }
+            }
+        }
+    }
+
+    /**
+     * Prints each event as soon as the parser reports it, so nothing but
+     * the parser state has to be kept in memory.
+     */
+    static class EventPrinter implements LogEventListener {
+        private final PrintStream out;
+        private final boolean printInlining;
+
+        EventPrinter(PrintStream out, boolean printInlining) {
+            this.out = out;
+            this.printInlining = printInlining;
+        }
+
+        public void onCompilation(Compilation compilation) {
+            compilation.print(out, printInlining);
+        }
+
+        public void onNMethod(NMethod nmethod) {
+            nmethod.print(out);
+        }
+
+        public void onUncommonTrap(UncommonTrapEvent trap) {
+            trap.print(out);
+        }
 
+        public void onMakeNotEntrant(MakeNotEntrantEvent event) {
+            event.print(out);
+        }
+    }
+
+    public static void printStatistics(ArrayList<LogEvent> events, PrintStream out) {
+        StatisticsPrinter printer = new StatisticsPrinter(out);
         for (LogEvent e : events) {
             if (e instanceof Compilation) {
-                Compilation c = (Compilation) e;
-                c.printShort(out);
-                out.printf(" %6.4f\n", c.getElapsedTime());
-                attempts[c.getAttempts()]++;
-                maxattempts = Math.max(maxattempts,c.getAttempts());
-                elapsed += c.getElapsedTime();
-                for (Phase phase : c.getPhases()) {
-                    Double v = phaseTime.get(phase.getName());
-                    if (v == null) {
-                        v = Double.valueOf(0.0);
-                    }
-                    phaseTime.put(phase.getName(), Double.valueOf(v.doubleValue() + phase.getElapsedTime()));
+                printer.onCompilation((Compilation) e);
+            } else if (e instanceof MakeNotEntrantEvent) {
+                printer.onMakeNotEntrant((MakeNotEntrantEvent) e);
+            } else if (e instanceof NMethod) {
+                printer.onNMethod((NMethod) e);
+            }
+        }
+        printer.printSummary();
+    }
 
-                    Integer v2 = phaseNodes.get(phase.getName());
-                    if (v2 == null) {
-                        v2 = Integer.valueOf(0);
-                    }
-                    phaseNodes.put(phase.getName(), Integer.valueOf(v2.intValue() + phase.getNodes()));
-                    out.printf("\t%s %6.4f %d %d\n", phase.getName(), phase.getElapsedTime(), phase.getStartNodes(), phase.getNodes());
+    /**
+     * Prints every compilation with its phases as it is reported and the
+     * totals at the end, so it works on events in any order, also while
+     * they are parsed.
+     */
+    static class StatisticsPrinter implements LogEventListener {
+        private final PrintStream out;
+        private long cacheSize = 0;
+        private long maxCacheSize = 0;
+        private int nmethodsCreated = 0;
+        private int nmethodsLive = 0;
+        private int[] attempts = new int[32];
+        private int maxattempts = 0;
+
+        private LinkedHashMap<String, Double> phaseTime = new LinkedHashMap<String, Double>(7);
+        private LinkedHashMap<String, Integer> phaseNodes = new LinkedHashMap<String, Integer>(7);
+        private double elapsed = 0;
+
+        StatisticsPrinter(PrintStream out) {
+            this.out = out;
+        }
+
+        public void onCompilation(Compilation c) {
+            c.printShort(out);
+            out.printf(" %6.4f\n", c.getElapsedTime());
+            attempts[c.getAttempts()]++;
+            maxattempts = Math.max(maxattempts,c.getAttempts());
+            elapsed += c.getElapsedTime();
+            for (Phase phase : c.getPhases()) {
+                Double v = phaseTime.get(phase.getName());
+                if (v == null) {
+                    v = Double.valueOf(0.0);
                 }
-            } else if (e instanceof MakeNotEntrantEvent) {
-                MakeNotEntrantEvent mne = (MakeNotEntrantEvent) e;
-                NMethod nm = mne.getNMethod();
-                if (mne.isZombie()) {
-                    if (nm == null) {
-                        System.err.println(mne.getId());
-                    }
-                    cacheSize -= nm.getSize();
-                    nmethodsLive--;
+                phaseTime.put(phase.getName(), Double.valueOf(v.doubleValue() + phase.getElapsedTime()));
+
+                Integer v2 = phaseNodes.get(phase.getName());
+                if (v2 == null) {
+                    v2 = Integer.valueOf(0);
                 }
-            } else if (e instanceof NMethod) {
-                nmethodsLive++;
-                nmethodsCreated++;
-                NMethod nm = (NMethod) e;
-                cacheSize += nm.getSize();
-                maxCacheSize = Math.max(cacheSize, maxCacheSize);
+                phaseNodes.put(phase.getName(), Integer.valueOf(v2.intValue() + phase.getNodes()));
+                out.printf("\t%s %6.4f %d %d\n", phase.getName(), phase.getElapsedTime(), phase.getStartNodes(), phase.getNodes());
             }
         }
-        out.printf("NMethods: %d created %d live %d bytes (%d peak) in the code cache\n",
-                          nmethodsCreated, nmethodsLive, cacheSize, maxCacheSize);
-        out.println("Phase times:");
-        for (String name : phaseTime.keySet()) {
-            Double v = phaseTime.get(name);
-            Integer v2 = phaseNodes.get(name);
-            out.printf("%20s %6.4f %d\n", name, v.doubleValue(), v2.intValue());
+
+        public void onMakeNotEntrant(MakeNotEntrantEvent mne) {
+            NMethod nm = mne.getNMethod();
+            if (mne.isZombie()) {
+                if (nm == null) {
+                    System.err.println(mne.getId());
+                }
+                cacheSize -= nm.getSize();
+                nmethodsLive--;
+            }
+        }
+
+        public void onNMethod(NMethod nm) {
+            nmethodsLive++;
+            nmethodsCreated++;
+            cacheSize += nm.getSize();
+            maxCacheSize = Math.max(cacheSize, maxCacheSize);
         }
-        out.printf("%20s %6.4f\n", "total", elapsed);
 
-        if (maxattempts > 0) {
-            out.println("Distribution of regalloc passes:");
-            for (int i = 0; i <= maxattempts; i++) {
-                out.printf("%2d %8d\n", i, attempts[i]);
+        public void onUncommonTrap(UncommonTrapEvent trap) {
+        }
+
+        void printSummary() {
+            out.printf("NMethods: %d created %d live %d bytes (%d peak) in the code cache\n",
+                              nmethodsCreated, nmethodsLive, cacheSize, maxCacheSize);
+            out.println("Phase times:");
+            for (String name : phaseTime.keySet()) {
+                Double v = phaseTime.get(name);
+                Integer v2 = phaseNodes.get(name);
+                out.printf("%20s %6.4f %d\n", name, v.doubleValue(), v2.intValue());
+            }
+            out.printf("%20s %6.4f\n", "total", elapsed);
+
+            if (maxattempts > 0) {
+                out.println("Distribution of regalloc passes:");
+                for (int i = 0; i <= maxattempts; i++) {
+                    out.printf("%2d %8d\n", i, attempts[i]);
+                }
             }
         }
     }
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+/**
+ * Receives the events of a LogCompilation file as soon as the parser has
+ * seen their closing tag, so a log can be processed in a single pass
+ * without keeping every event in memory.
+ *
+ * An NMethod is usually reported before the Compilation which produced it,
+ * since the per thread compilation logs are appended at the end of the
+ * file. The two are linked to each other as soon as both have been seen.
+ */
+public interface LogEventListener {
+
+    public void onCompilation(Compilation compilation);
+
+    public void onNMethod(NMethod nmethod);
+
+    public void onUncommonTrap(UncommonTrapEvent trap);
+
+    public void onMakeNotEntrant(MakeNotEntrantEvent event);
+}
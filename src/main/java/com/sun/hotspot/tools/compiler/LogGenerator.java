@@ -0,0 +1,651 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Writes a synthetic LogCompilation log, to try the tools on logs of any
+ * size.  Only the elements LogParser looks at are written: the tty section
+ * with nmethod, uncommon_trap (with jvms) and make_not_entrant, then a
+ * compilation log per compiler thread with the tasks, their phases and
+ * inlining trees of parse, call, inline_fail and intrinsic.
+ *
+ * Every compilation has its own random generators seeded from the seed and
+ * its number, so the tty section and the tasks can be written one after
+ * the other without remembering anything in between, and the same seed
+ * always gives the same log.  Memory use doesn't depend on the size of the
+ * log.
+ */
+public class LogGenerator {
+
+    private static final String[] TYPES = {"void", "int", "long", "boolean", "java/lang/Object", "java/lang/String"};
+    private static final String[] DESCRIPTORS = {"V", "I", "J", "Z", "Ljava/lang/Object;", "Ljava/lang/String;"};
+    /** the first type that is a klass */
+    private static final int FIRST_KLASS = 4;
+    private static final int FIRST_TYPE_ID = 600;
+    private static final int FIRST_ID = 700;
+
+    private static final String[] INLINE_FAILURES = {
+        "executed &lt; MinInliningThreshold times", "never executed", "call site not reached",
+        "already compiled into a big method", "no static binding", "recursive inlining is too deep"
+    };
+    private static final String[] INTRINSICS = {"_hashCode", "_min", "_max", "_arraycopy", "_compareTo"};
+    private static final String[][] TRAPS = {
+        {"class_check", "maybe_recompile"}, {"null_check", "maybe_recompile"}, {"range_check", "make_not_entrant"},
+        {"unstable_if", "reinterpret"}, {"predicate", "maybe_recompile"}, {"bimorphic", "maybe_recompile"}
+    };
+
+    private static final long CODE_CACHE_START = 0x10000000L;
+    private static final long CODE_CACHE_SIZE = 48L << 20;
+    private static final int MAX_INLINE_SIZE = 325;
+    private static final int SAMPLE = 1000;
+    /** milliseconds between the starts of two compilations */
+    private static final int STEP = 10;
+
+    private final long seed;
+    private long compilations = 10000;
+    private int depth = 6;
+    private int fanout = 4;
+    private double trapRate = 0.05;
+    private int threads = 2;
+
+    private final int[] holders;
+    private final int[] bytes;
+    private final int[] invocations;
+    private final int[][] arguments;
+    private final int[] returns;
+    /** holder, name and signature of each method, the way the tty section names them */
+    private final String[] names;
+
+    public LogGenerator(long seed, int methods) {
+        this.seed = seed;
+        holders = new int[methods];
+        bytes = new int[methods];
+        invocations = new int[methods];
+        arguments = new int[methods][];
+        returns = new int[methods];
+        names = new String[methods];
+        Random r = new Random(seed);
+        for (int m = 0; m < methods; m++) {
+            holders[m] = m / 8;
+            // mostly small methods, some too big to inline
+            bytes[m] = 1 + (int) (400 * r.nextDouble() * r.nextDouble());
+            invocations[m] = r.nextInt(100000);
+            arguments[m] = new int[r.nextInt(4)];
+            StringBuilder sb = new StringBuilder();
+            sb.append(holder(holders[m])).append(" m").append(m).append(" (");
+            for (int i = 0; i < arguments[m].length; i++) {
+                arguments[m][i] = 1 + r.nextInt(TYPES.length - 1);
+                sb.append(DESCRIPTORS[arguments[m][i]]);
+            }
+            returns[m] = r.nextInt(TYPES.length);
+            sb.append(')').append(DESCRIPTORS[returns[m]]);
+            names[m] = sb.toString();
+        }
+    }
+
+    public void setCompilations(long compilations) {
+        this.compilations = compilations;
+    }
+
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    public void setFanout(int fanout) {
+        this.fanout = fanout;
+    }
+
+    /**
+     * The average number of uncommon traps per compilation.
+     */
+    public void setTrapRate(double trapRate) {
+        this.trapRate = trapRate;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Sets the number of compilations so the log becomes about the given
+     * size, measured by writing the first compilations.
+     */
+    public void setSize(long size) throws IOException {
+        long saved = compilations;
+        compilations = SAMPLE;
+        Counter counter = new Counter();
+        write(counter);
+        compilations = saved;
+        setCompilations(Math.max(1, size * SAMPLE / counter.count));
+    }
+
+    private static String holder(int holder) {
+        return "gen/p" + (holder % 16) + "/C" + holder;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * The generator of one aspect of compilation i.
+     */
+    private Random random(long i, int aspect) {
+        return new Random(mix(seed ^ mix(i * 4 + aspect)));
+    }
+
+    /**
+     * What both sections need to know about a compilation.
+     */
+    private class Task {
+        final long id;
+        final int method;
+        final boolean osr;
+        final int osrBci;
+        final boolean success;
+        final long start;
+        final long end;
+        final int size;
+        final int count;
+        final int backedges;
+
+        Task(long i) {
+            Random r = random(i, 0);
+            id = i + 1;
+            // the first methods are the hot ones
+            double d = r.nextDouble();
+            method = (int) (d * d * holders.length);
+            osr = r.nextInt(20) == 0;
+            osrBci = r.nextInt(bytes[method]);
+            success = r.nextInt(50) != 0;
+            start = 100 + STEP * i;
+            // a compiler thread is done before it starts its next task
+            end = start + 1 + r.nextInt(STEP * threads - 1);
+            size = (200 + r.nextInt(8000)) & ~7;
+            count = r.nextInt(20000);
+            backedges = r.nextInt(20000);
+        }
+
+        void attributes(Writer out) throws IOException {
+            attribute(out, "compile_id", id);
+            if (osr) {
+                attribute(out, "compile_kind", "osr");
+            }
+        }
+
+        void method(Writer out) throws IOException {
+            attribute(out, "method", names[method]);
+            attribute(out, "bytes", bytes[method]);
+            attribute(out, "count", count);
+            attribute(out, "backedge_count", backedges);
+            attribute(out, "iicount", invocations[method]);
+        }
+    }
+
+    public void write(String file) throws IOException {
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), 1 << 16)) {
+            write(out);
+        }
+    }
+
+    public void write(Writer out) throws IOException {
+        out.write("<?xml version='1.0' encoding='UTF-8'?>\n");
+        out.write("<hotspot_log version='160 1' process='1' time_ms='0'>\n");
+        out.write("<tty>\n");
+        long offset = 0;
+        for (long i = 0; i < compilations; i++) {
+            Task t = new Task(i);
+            if (!t.success) {
+                continue;
+            }
+            if (offset + t.size > CODE_CACHE_SIZE) {
+                // wrap around, the code there is flushed by now
+                offset = 0;
+            }
+            long address = CODE_CACHE_START + offset;
+            offset += t.size;
+            out.write("<nmethod");
+            t.attributes(out);
+            attribute(out, "compiler", "C2");
+            attribute(out, "entry", "0x" + Long.toHexString(address + 0x100));
+            attribute(out, "size", t.size);
+            attribute(out, "address", "0x" + Long.toHexString(address));
+            t.method(out);
+            stamp(out, t.end);
+            out.write("/>\n");
+            traps(out, t, random(i, 2));
+        }
+        out.write("<tty_done");
+        stamp(out, 100 + STEP * compilations);
+        out.write("/>\n</tty>\n");
+        for (int thread = 0; thread < threads; thread++) {
+            out.write("<compilation_log");
+            attribute(out, "thread", 1000 + thread);
+            out.write(">\n<start_compile_thread");
+            attribute(out, "thread", 1000 + thread);
+            attribute(out, "process", 1);
+            stamp(out, 50);
+            out.write("/>\n");
+            for (long i = thread; i < compilations; i += threads) {
+                task(out, new Task(i), random(i, 1));
+            }
+            out.write("</compilation_log>\n");
+        }
+        out.write("<hotspot_log_done");
+        stamp(out, 100 + STEP * compilations);
+        out.write("/>\n</hotspot_log>\n");
+    }
+
+    private void traps(Writer out, Task t, Random r) throws IOException {
+        long stamp = t.end;
+        for (int n = 0; n < 100 && r.nextDouble() < trapRate / (1 + trapRate); n++) {
+            String[] trap = TRAPS[r.nextInt(TRAPS.length)];
+            stamp += 1 + r.nextInt(3);
+            out.write("<uncommon_trap");
+            attribute(out, "thread", 1);
+            attribute(out, "reason", trap[0]);
+            attribute(out, "action", trap[1]);
+            t.attributes(out);
+            attribute(out, "compiler", "C2");
+            attribute(out, "count", n);
+            stamp(out, stamp);
+            out.write(">\n<jvms");
+            attribute(out, "bci", r.nextInt(bytes[t.method]));
+            t.method(out);
+            out.write("/>\n</uncommon_trap>\n");
+            if (trap[1].equals("make_not_entrant")) {
+                out.write("<make_not_entrant");
+                attribute(out, "thread", 1);
+                t.attributes(out);
+                attribute(out, "compiler", "C2");
+                stamp(out, stamp);
+                out.write("/>\n");
+                return;
+            }
+        }
+    }
+
+    /**
+     * The ids of the types, klasses and methods declared in a task, and
+     * the clock of its parse phase.
+     */
+    private static class Ids {
+        final Map<Integer, Integer> holders = new HashMap<Integer, Integer>();
+        final Map<Integer, Integer> methods = new HashMap<Integer, Integer>();
+        int next = FIRST_ID;
+        int nodes = 3;
+        final Random timing;
+        long now;
+        final long parseEnd;
+
+        Ids(Task t, Random timing) {
+            this.timing = timing;
+            now = t.start;
+            // parsing takes up to 60% of the compilation
+            parseEnd = t.start + (t.end - t.start) * 6 / 10;
+        }
+
+        /**
+         * The stamp of the next parse or parse_done, time goes on by a
+         * millisecond every now and then.
+         */
+        long tick() {
+            if (now < parseEnd && timing.nextInt(3) == 0) {
+                now++;
+            }
+            return now;
+        }
+    }
+
+    private void task(Writer out, Task t, Random r) throws IOException {
+        out.write("<task");
+        t.attributes(out);
+        t.method(out);
+        if (t.osr) {
+            attribute(out, "osr_bci", t.osrBci);
+        }
+        stamp(out, t.start);
+        out.write(">\n<phase");
+        attribute(out, "name", "parse");
+        attribute(out, "nodes", 3);
+        stamp(out, t.start);
+        out.write(">\n");
+        for (int type = 0; type < TYPES.length; type++) {
+            out.write(type < FIRST_KLASS ? "<type" : "<klass");
+            attribute(out, "id", FIRST_TYPE_ID + type);
+            attribute(out, "name", TYPES[type]);
+            if (type >= FIRST_KLASS) {
+                attribute(out, "flags", 1);
+            }
+            out.write("/>\n");
+        }
+        Ids ids = new Ids(t, random(t.id - 1, 3));
+        int root = declare(out, t.method, ids);
+        parse(out, r, t, t.method, root, 0, ids);
+        long parsed = ids.now;
+        phaseDone(out, ids.nodes, parsed);
+        if (!t.success) {
+            out.write("<failure");
+            attribute(out, "reason", "out of nodes during matching");
+            attribute(out, "phase", "compile");
+            out.write("/>\n");
+        } else {
+            // the rest of the time is split up among the other phases
+            long rest = t.end - parsed;
+            long optimized = parsed + rest / 2;
+            long matched = optimized + rest * 15 / 100;
+            long allocated = matched + rest / 4;
+            int nodes = ids.nodes;
+            phase(out, "optimizer", nodes, parsed);
+            phase(out, "idealLoop", nodes, parsed + (optimized - parsed) / 3);
+            nodes += nodes / 10;
+            phaseDone(out, nodes, optimized);
+            phaseDone(out, nodes, optimized);
+            phase(out, "matcher", nodes, optimized);
+            nodes -= nodes / 3;
+            phaseDone(out, nodes, matched);
+            phase(out, "regalloc", nodes, matched);
+            out.write("<regalloc attempts='0' success='1'/>\n");
+            phaseDone(out, nodes, allocated);
+            phase(out, "output", nodes, allocated);
+            phaseDone(out, nodes + nodes / 8, t.end);
+        }
+        out.write("<task_done");
+        attribute(out, "success", t.success ? 1 : 0);
+        if (t.success) {
+            attribute(out, "nmsize", t.size / 4);
+        }
+        attribute(out, "count", t.count);
+        attribute(out, "backedge_count", t.backedges);
+        stamp(out, t.end);
+        out.write("/>\n</task>\n");
+    }
+
+    private void parse(Writer out, Random r, Task t, int method, int id, int level, Ids ids) throws IOException {
+        out.write("<parse");
+        attribute(out, "method", id);
+        attribute(out, "uses", invocations[method]);
+        stamp(out, ids.tick());
+        out.write(">\n");
+        int calls = r.nextInt(fanout + 1);
+        int step = Math.max(1, bytes[method] / (calls + 1));
+        for (int c = 1; c <= calls; c++) {
+            int bci = c * step;
+            int callee = r.nextInt(holders.length);
+            int calleeId = declare(out, callee, ids);
+            int receiver = r.nextInt(3) == 0 ? declareHolder(out, holders[r.nextInt(holders.length)], ids) : -1;
+            int count = 1 + r.nextInt(10000);
+            out.write("<bc");
+            attribute(out, "code", receiver >= 0 ? 182 : 184);
+            attribute(out, "bci", bci);
+            out.write("/>\n<call");
+            attribute(out, "method", calleeId);
+            attribute(out, "count", count);
+            attribute(out, "prof_factor", 1);
+            if (receiver >= 0) {
+                attribute(out, "virtual", 1);
+                attribute(out, "receiver", receiver);
+                attribute(out, "receiver_count", count / 2);
+            }
+            attribute(out, "inline", 1);
+            out.write("/>\n");
+            int outcome = r.nextInt(100);
+            if (outcome < 5) {
+                out.write("<intrinsic");
+                attribute(out, "id", INTRINSICS[r.nextInt(INTRINSICS.length)]);
+                attribute(out, "nodes", 3);
+                out.write("/>\n");
+                ids.nodes += 3;
+            } else if (level >= depth) {
+                fail(out, "inlining too deep", bci);
+            } else if (bytes[callee] > MAX_INLINE_SIZE) {
+                fail(out, count > 5000 ? "hot method too big" : "too big", bci);
+            } else if (outcome < 30) {
+                fail(out, INLINE_FAILURES[r.nextInt(INLINE_FAILURES.length)], bci);
+            } else {
+                parse(out, r, t, callee, calleeId, level + 1, ids);
+            }
+        }
+        ids.nodes += 10 + bytes[method] / 2;
+        out.write("<parse_done");
+        attribute(out, "nodes", ids.nodes);
+        attribute(out, "memory", ids.nodes * 256);
+        stamp(out, ids.tick());
+        out.write("/>\n</parse>\n");
+    }
+
+    private static void fail(Writer out, String reason, int bci) throws IOException {
+        out.write("<inline_fail");
+        attribute(out, "reason", reason);
+        out.write("/>\n<direct_call");
+        attribute(out, "bci", bci);
+        out.write("/>\n");
+    }
+
+    private int declareHolder(Writer out, int holder, Ids ids) throws IOException {
+        Integer id = ids.holders.get(holder);
+        if (id == null) {
+            id = ids.next++;
+            ids.holders.put(holder, id);
+            out.write("<klass");
+            attribute(out, "id", id);
+            attribute(out, "name", holder(holder));
+            attribute(out, "flags", 1);
+            out.write("/>\n");
+        }
+        return id;
+    }
+
+    private int declare(Writer out, int method, Ids ids) throws IOException {
+        Integer id = ids.methods.get(method);
+        if (id == null) {
+            int holder = declareHolder(out, holders[method], ids);
+            id = ids.next++;
+            ids.methods.put(method, id);
+            out.write("<method");
+            attribute(out, "id", id);
+            attribute(out, "holder", holder);
+            attribute(out, "name", "m" + method);
+            attribute(out, "return", FIRST_TYPE_ID + returns[method]);
+            if (arguments[method].length > 0) {
+                StringBuilder sb = new StringBuilder();
+                for (int type : arguments[method]) {
+                    if (sb.length() > 0) {
+                        sb.append(' ');
+                    }
+                    sb.append(FIRST_TYPE_ID + type);
+                }
+                attribute(out, "arguments", sb.toString());
+            }
+            attribute(out, "flags", 1);
+            attribute(out, "bytes", bytes[method]);
+            attribute(out, "iicount", invocations[method]);
+            out.write("/>\n");
+        }
+        return id;
+    }
+
+    private static void phase(Writer out, String name, int nodes, long stamp) throws IOException {
+        out.write("<phase");
+        attribute(out, "name", name);
+        attribute(out, "nodes", nodes);
+        stamp(out, stamp);
+        out.write(">\n");
+    }
+
+    private static void phaseDone(Writer out, int nodes, long stamp) throws IOException {
+        out.write("<phase_done");
+        attribute(out, "nodes", nodes);
+        stamp(out, stamp);
+        out.write("/>\n</phase>\n");
+    }
+
+    private static void attribute(Writer out, String name, String value) throws IOException {
+        out.write(' ');
+        out.write(name);
+        out.write("='");
+        out.write(value);
+        out.write('\'');
+    }
+
+    private static void attribute(Writer out, String name, long value) throws IOException {
+        attribute(out, name, Long.toString(value));
+    }
+
+    /**
+     * Writes the stamp of the milliseconds in seconds, the way HotSpot does.
+     */
+    private static void stamp(Writer out, long millis) throws IOException {
+        String fraction = Long.toString(1000 + millis % 1000);
+        attribute(out, "stamp", millis / 1000 + "." + fraction.substring(1));
+    }
+
+    /**
+     * Counts what is written to it instead of keeping it.
+     */
+    static class Counter extends Writer {
+        long count;
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            count += length;
+        }
+
+        @Override
+        public void write(String s) {
+            count += s.length();
+        }
+
+        @Override
+        public void write(int c) {
+            count++;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    static void usage(int exitcode) {
+        System.out.println("Usage: LogGenerator [ -seed n ] [ -methods n ] [ -compilations n | -size n[k|m|g] ]");
+        System.out.println("                    [ -depth n ] [ -fanout n ] [ -traps rate ] [ -threads n ] file");
+        System.out.println("  -seed:         the same seed gives the same log (0)");
+        System.out.println("  -methods:      number of distinct methods (5000)");
+        System.out.println("  -compilations: number of compilations (10000)");
+        System.out.println("  -size:         write about this many bytes instead, can't be combined with -compilations");
+        System.out.println("  -depth:        maximum inline depth (6)");
+        System.out.println("  -fanout:       maximum number of calls per inlined method (4)");
+        System.out.println("  -traps:        average number of uncommon traps per compilation (0.05)");
+        System.out.println("  -threads:      number of compiler threads (2)");
+        System.exit(exitcode);
+    }
+
+    /**
+     * Parses a size in bytes, with an optional k, m or g suffix.
+     */
+    public static long size(String size) {
+        char unit = Character.toLowerCase(size.charAt(size.length() - 1));
+        int shift = unit == 'k' ? 10 : unit == 'm' ? 20 : unit == 'g' ? 30 : 0;
+        return Long.parseLong(shift == 0 ? size : size.substring(0, size.length() - 1)) << shift;
+    }
+
+    public static void main(String[] args) throws Exception {
+        long seed = 0;
+        int methods = 5000;
+        long compilations = -1;
+        long size = -1;
+        int depth = -1;
+        int fanout = -1;
+        double traps = -1;
+        int threads = -1;
+        int index = 0;
+        try {
+            while (index < args.length - 1) {
+                String option = args[index];
+                String value = args[index + 1];
+                if (option.equals("-seed")) {
+                    seed = Long.parseLong(value);
+                } else if (option.equals("-methods")) {
+                    methods = Integer.parseInt(value);
+                } else if (option.equals("-compilations")) {
+                    compilations = Long.parseLong(value);
+                } else if (option.equals("-size")) {
+                    size = size(value);
+                } else if (option.equals("-depth")) {
+                    depth = Integer.parseInt(value);
+                } else if (option.equals("-fanout")) {
+                    fanout = Integer.parseInt(value);
+                } else if (option.equals("-traps")) {
+                    traps = Double.parseDouble(value);
+                } else if (option.equals("-threads")) {
+                    threads = Integer.parseInt(value);
+                } else {
+                    usage(1);
+                }
+                index += 2;
+            }
+        } catch (NumberFormatException e) {
+            usage(1);
+        }
+        if (index != args.length - 1 || methods < 1 || size >= 0 && compilations >= 0) {
+            usage(1);
+        }
+
+        LogGenerator generator = new LogGenerator(seed, methods);
+        if (depth >= 0) {
+            generator.setDepth(depth);
+        }
+        if (fanout >= 0) {
+            generator.setFanout(fanout);
+        }
+        if (traps >= 0) {
+            generator.setTrapRate(traps);
+        }
+        if (threads > 0) {
+            generator.setThreads(threads);
+        }
+        if (size >= 0) {
+            generator.setSize(size);
+        } else if (compilations >= 0) {
+            generator.setCompilations(compilations);
+        }
+        generator.write(args[index]);
+    }
+}
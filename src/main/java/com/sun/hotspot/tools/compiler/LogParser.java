@@ -29,14 +29,20 @@
 
 package com.sun.hotspot.tools.compiler;
 
-import java.io.FileReader;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Stack;
+import java.util.zip.GZIPInputStream;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 import org.xml.sax.Attributes;
@@ -84,7 +90,13 @@ public class LogParser extends DefaultHandler implements ErrorHandler, Constants
         public int compare(LogEvent a, LogEvent b) {
             Compilation c1 = a.getCompilation();
             Compilation c2 = b.getCompilation();
-            if (c1 != null && c2 != null) {
+            // events without a compilation come first, comparing them by
+            // start with everything else wouldn't be transitive
+            if (c1 == null || c2 == null) {
+                if (c1 != c2) {
+                    return c1 == null ? -1 : 1;
+                }
+            } else {
                 int result = c1.getMethod().toString().compareTo(c2.getMethod().toString());
                 if (result != 0) {
                     return result;
@@ -133,19 +145,40 @@ public class LogParser extends DefaultHandler implements ErrorHandler, Constants
         }
     };
 
-    private ArrayList<LogEvent> events = new ArrayList<LogEvent>();
+    private final LogEventListener listener;
+    private final SymbolTable symbols;
 
     private HashMap<String, String> types = new HashMap<String, String>();
     private HashMap<String, Method> methods = new HashMap<String, Method>();
-    private LinkedHashMap<String, NMethod> nmethods = new LinkedHashMap<String, NMethod>();
-    private HashMap<String, Compilation> compiles = new HashMap<String, Compilation>();
+    HashMap<String, NMethod> nmethods = new HashMap<String, NMethod>();
+    HashMap<String, Compilation> compiles = new HashMap<String, Compilation>();
     private String failureReason;
     private int bci;
-    private Stack<CallSite> scopes = new Stack<CallSite>();
+    private int[] scopes = new int[64];
+    private int scopeDepth;
     private Compilation compile;
-    private CallSite site;
+    private String compileKey;
+    private int site = -1;
+    private InlineTree.Builder tree = new InlineTree.Builder();
     private Stack<Phase> phaseStack = new Stack<Phase>();
     private UncommonTrapEvent currentTrap;
+    // methods of JVM states by their text, the tty section repeats them a lot
+    private final HashMap<String, Method> frameMethods = new HashMap<String, Method>();
+    // traps waiting for the compilation they happened in, which the log
+    // writes later.  Only so many are kept, the nmethods that trapped first
+    // are given up on first.
+    static final int MAX_PENDING_TRAPS = 1 << 20;
+    final LinkedHashMap<String, ArrayList<UncommonTrapEvent>> pendingTraps = new LinkedHashMap<String, ArrayList<UncommonTrapEvent>>();
+    private int pendingTrapCount;
+
+    LogParser(LogEventListener listener) {
+        this(listener, new SymbolTable());
+    }
+
+    LogParser(LogEventListener listener, SymbolTable symbols) {
+        this.listener = listener;
+        this.symbols = symbols;
+    }
 
     long parseLong(String l) {
         try {
@@ -157,23 +190,119 @@ public class LogParser extends DefaultHandler implements ErrorHandler, Constants
             long v1 = Long.decode(s1).longValue() & 0xffffffffL;
             long v2 = (Long.decode(s2).longValue() & 0xffffffffL) << 32;
             if (!l.equals("0x" + Long.toHexString(v1 + v2))) {
-                System.out.println(l);
-                System.out.println(s1);
-                System.out.println(s2);
-                System.out.println(v1);
-                System.out.println(v2);
-                System.out.println(Long.toHexString(v1 + v2));
-                throw new InternalError("bad conversion");
+                throw new InternalError("bad conversion of " + l + ": " + s1 + " and " + s2
+                        + " make 0x" + Long.toHexString(v1 + v2));
             }
             return v1 + v2;
         }
     }
 
+    /**
+     * The numeric attribute accessors read the value straight from the
+     * bytes of the log when it is parsed by the {@link MappedLogParser}.
+     */
+    int parseInt(Attributes atts, String name) {
+        if (atts instanceof MappedLogParser.ByteAttributes) {
+            MappedLogParser.ByteAttributes b = (MappedLogParser.ByteAttributes) atts;
+            int i = b.getIndex(name);
+            if (i >= 0) {
+                return b.intValue(i);
+            }
+        }
+        return Integer.parseInt(search(atts, name));
+    }
+
+    int parseInt(Attributes atts, String name, int defaultValue) {
+        if (atts instanceof MappedLogParser.ByteAttributes) {
+            MappedLogParser.ByteAttributes b = (MappedLogParser.ByteAttributes) atts;
+            int i = b.getIndex(name);
+            return i >= 0 ? b.intValue(i) : defaultValue;
+        }
+        String value = atts.getValue(name);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    double parseDouble(Attributes atts, String name) {
+        if (atts instanceof MappedLogParser.ByteAttributes) {
+            MappedLogParser.ByteAttributes b = (MappedLogParser.ByteAttributes) atts;
+            int i = b.getIndex(name);
+            if (i >= 0) {
+                return b.doubleValue(i);
+            }
+        }
+        return Double.parseDouble(search(atts, name));
+    }
+
+    long parseLong(Attributes atts, String name) {
+        if (atts instanceof MappedLogParser.ByteAttributes) {
+            MappedLogParser.ByteAttributes b = (MappedLogParser.ByteAttributes) atts;
+            int i = b.getIndex(name);
+            if (i >= 0) {
+                return b.longValue(i);
+            }
+        }
+        return parseLong(atts.getValue(name));
+    }
+
     public static ArrayList<LogEvent> parse(String file, boolean cleanup) throws Exception {
-        return parse(new FileReader(file), cleanup);
+        try (Reader reader = new InputStreamReader(open(file))) {
+            return parse(reader, cleanup);
+        }
     }
 
     public static ArrayList<LogEvent> parse(Reader reader, boolean cleanup) throws Exception {
+        EventCollector collector = new EventCollector();
+        parse(reader, cleanup, collector);
+        ArrayList<LogEvent> events = collector.events;
+
+        // Initially we want the LogEvent log sorted by timestamp
+        Collections.sort(events, sortByStart);
+
+        return events;
+    }
+
+    public static void parse(String file, boolean cleanup, LogEventListener listener) throws Exception {
+        try (Reader reader = new InputStreamReader(open(file))) {
+            parse(reader, cleanup, listener);
+        }
+    }
+
+    /**
+     * Opens a log, gzipped ones are decompressed on the fly, see
+     * {@link ParallelGzipInputStream}.
+     */
+    public static InputStream open(String file) throws IOException {
+        if (!ParallelGzipInputStream.isCompressed(file)) {
+            return new FileInputStream(file);
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        if (cores > 1) {
+            return new ParallelGzipInputStream(file, cores);
+        }
+        return new GZIPInputStream(new FileInputStream(file), ParallelGzipInputStream.CHUNK);
+    }
+
+    /**
+     * Decompresses the stream if it is gzipped, otherwise returns the
+     * bytes as they are.
+     */
+    public static InputStream decompress(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, ParallelGzipInputStream.CHUNK);
+        buffered.mark(2);
+        boolean compressed = buffered.read() == 0x1f && buffered.read() == 0x8b;
+        buffered.reset();
+        return compressed ? new GZIPInputStream(buffered, ParallelGzipInputStream.CHUNK) : buffered;
+    }
+
+    /**
+     * Parses the log and reports every event to the listener as soon as it
+     * is complete.  Events arrive in file order, not sorted by start time.
+     */
+    public static void parse(Reader reader, boolean cleanup, LogEventListener listener) throws Exception {
+        parse(reader, cleanup, new LogParser(listener));
+    }
+
+    static void parse(Reader reader, boolean cleanup, LogParser log) throws Exception {
         // Create the XML input factory
         SAXParserFactory factory = SAXParserFactory.newInstance();
 
@@ -186,23 +315,109 @@ public class LogParser extends DefaultHandler implements ErrorHandler, Constants
             reader = new LogCleanupReader(reader);
         }
 
-        LogParser log = new LogParser();
         p.parse(new InputSource(reader), log);
+    }
 
-        // Associate compilations with their NMethods
-        for (NMethod nm : log.nmethods.values()) {
-            Compilation c = log.compiles.get(nm.getId());
-            nm.setCompilation(c);
-            // Native wrappers for methods don't have a compilation
-            if (c != null) {
-                c.setNMethod(nm);
+    /**
+     * Parses a file that is still being written and reports its events as
+     * they are appended, see {@link FollowInputStream}.  Returns once the
+     * log is complete or following stops.  When a new VM rewrites the file
+     * its log is followed from the start.
+     */
+    public static void follow(String file, boolean cleanup, LogEventListener listener) throws Exception {
+        while (true) {
+            try (InputStream in = new FollowInputStream(file)) {
+                parse(new InputStreamReader(in), cleanup, listener);
+                return;
+            } catch (FollowInputStream.RotatedException e) {
+                System.err.println(e.getMessage() + ", following the new log");
             }
         }
+    }
 
-        // Initially we want the LogEvent log sorted by timestamp
-        Collections.sort(log.events, sortByStart);
+    /**
+     * Parses a file with the byte level tokenizer of {@link MappedLogParser}
+     * instead of SAX.  The tokenizer tolerates the malformed XML of old
+     * logs, so no cleanup is needed.
+     */
+    public static ArrayList<LogEvent> parseMapped(String file) throws Exception {
+        EventCollector collector = new EventCollector();
+        parseMapped(file, collector);
+        Collections.sort(collector.events, sortByStart);
+        return collector.events;
+    }
+
+    public static void parseMapped(String file, LogEventListener listener) throws Exception {
+        if (ParallelGzipInputStream.isCompressed(file)) {
+            // nothing to map, the tokenizer's tolerance is the cleanup's
+            parse(file, true, listener);
+            return;
+        }
+        MappedLogParser.parse(file, new LogParser(listener));
+    }
 
-        return log.events;
+    /**
+     * Parses a file with one thread per core, see {@link ParallelLogParser}.
+     */
+    public static ArrayList<LogEvent> parseParallel(String file, boolean cleanup) throws Exception {
+        if (ParallelGzipInputStream.isCompressed(file)) {
+            // the chunks can't be found without decompressing, which is
+            // parallel already
+            return parse(file, cleanup);
+        }
+        return ParallelLogParser.parse(file, cleanup, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Returns the events of the file's {@link Snapshot} if it is up to
+     * date, otherwise parses the file and writes a new snapshot for the
+     * next time.
+     */
+    public static ArrayList<LogEvent> parseCached(String file, boolean cleanup) throws Exception {
+        ArrayList<LogEvent> events = Snapshot.load(file);
+        if (events != null) {
+            return events;
+        }
+        events = parse(file, cleanup);
+        try {
+            Snapshot.save(file, events);
+        } catch (IOException e) {
+            // the snapshot is only a cache, e.g. the directory may be read only
+        }
+        return events;
+    }
+
+    /**
+     * Collects the reported events in file order.
+     */
+    static class EventCollector implements LogEventListener {
+        final ArrayList<LogEvent> events = new ArrayList<LogEvent>();
+
+        public void onCompilation(Compilation compilation) {
+            events.add(compilation);
+        }
+
+        public void onNMethod(NMethod nmethod) {
+            events.add(nmethod);
+        }
+
+        public void onUncommonTrap(UncommonTrapEvent trap) {
+            events.add(trap);
+        }
+
+        public void onMakeNotEntrant(MakeNotEntrantEvent event) {
+            events.add(event);
+        }
+    }
+
+    /**
+     * Associates a compilation with its NMethod.  Whichever of the two is
+     * seen last completes the pair, so only compilations still waiting for
+     * their NMethod have to be remembered.
+     */
+    static void associate(Compilation c, NMethod nm) {
+        nm.setCompilation(c);
+        c.setNMethod(nm);
     }
 
     String search(Attributes attr, String name) {
@@ -217,10 +432,11 @@ public class LogParser extends DefaultHandler implements ErrorHandler, Constants
         if (defaultValue != null) {
             return defaultValue;
         }
+        StringBuilder found = new StringBuilder();
         for (int i = 0; i < attr.getLength(); i++) {
-            System.out.println(attr.getQName(i) + " " + attr.getValue(attr.getQName(i)));
+            found.append(' ').append(attr.getQName(i)).append("='").append(attr.getValue(i)).append('\'');
         }
-        throw new InternalError("can't find " + name);
+        throw new InternalError("can't find " + name + " in" + found);
     }
     int indent = 0;
     String compile_id;
@@ -238,8 +454,68 @@ public class LogParser extends DefaultHandler implements ErrorHandler, Constants
     }
 
     void type(String id, String name) {
-        assert type(id) == null;
-        types.put(id, name);
+        assert !types.containsKey(id) : id;
+        types.put(id, symbols.intern(name));
+    }
+
+    /**
+     * Resolves the space separated type ids of a method's arguments, so
+     * the signature means the same in every task.
+     */
+    String arguments(String ids) {
+        if (ids == null) {
+            return "void";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String id : ids.split(" ")) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            String name = types.get(id);
+            if (name == null) {
+                sb.append(id);
+            } else {
+                String remapped = typeMap.get(name);
+                sb.append(remapped != null ? remapped : name);
+            }
+        }
+        return sb.toString();
+    }
+
+    Method frameMethod(Attributes atts) {
+        String text = atts.getValue("method");
+        Method m = frameMethods.get(text);
+        if (m == null) {
+            m = Descriptors.parse(text);
+            m.setBytes(parseInt(atts, "bytes", 0));
+            m = symbols.intern(m);
+            frameMethods.put(text, m);
+        }
+        return m;
+    }
+
+    /**
+     * Links a trap to the compilation of the code it happened in, now if
+     * that is known already, otherwise when its task shows up.
+     */
+    void linkTrap(UncommonTrapEvent trap) {
+        NMethod nm = nmethods.get(trap.getId());
+        if (nm != null && nm.getCompilation() != null) {
+            trap.setCompilation(nm.getCompilation());
+            return;
+        }
+        ArrayList<UncommonTrapEvent> traps = pendingTraps.get(trap.getId());
+        if (traps == null) {
+            traps = new ArrayList<UncommonTrapEvent>(2);
+            pendingTraps.put(trap.getId(), traps);
+        }
+        traps.add(trap);
+        pendingTrapCount++;
+        while (pendingTrapCount > MAX_PENDING_TRAPS) {
+            Iterator<ArrayList<UncommonTrapEvent>> eldest = pendingTraps.values().iterator();
+            pendingTrapCount -= eldest.next().size();
+            eldest.remove();
+        }
     }
 
     Method method(String id) {
@@ -252,7 +528,7 @@ public class LogParser extends DefaultHandler implements ErrorHandler, Constants
 
     public String makeId(Attributes atts) {
         String id = atts.getValue("compile_id");
-        String kind = atts.getValue("kind");
+        String kind = atts.getValue("compile_kind");
         if (kind != null && kind.equals("osr")) {
             id += "%";
         }
@@ -265,20 +541,22 @@ public class LogParser extends DefaultHandler implements ErrorHandler, Constants
             String qname,
             Attributes atts) {
         if (qname.equals("phase")) {
-            Phase p = new Phase(search(atts, "name"),
-                    Double.parseDouble(search(atts, "stamp")),
-                    Integer.parseInt(search(atts, "nodes")));
+            Phase p = new Phase(symbols.intern(search(atts, "name")),
+                    parseDouble(atts, "stamp"),
+                    parseInt(atts, "nodes"));
             phaseStack.push(p);
         } else if (qname.equals("phase_done")) {
             Phase p = phaseStack.pop();
-            p.setEndNodes(Integer.parseInt(search(atts, "nodes")));
-            p.setEnd(Double.parseDouble(search(atts, "stamp")));
+            p.setEndNodes(parseInt(atts, "nodes"));
+            p.setEnd(parseDouble(atts, "stamp"));
             compile.getPhases().add(p);
         } else if (qname.equals("task")) {
-            compile = new Compilation(Integer.parseInt(search(atts, "compile_id", "-1")));
-            compile.setStart(Double.parseDouble(search(atts, "stamp")));
-            compile.setICount(search(atts, "count", "0"));
-            compile.setBCount(search(atts, "backedge_count", "0"));
+            compile = new Compilation(parseInt(atts, "compile_id", -1));
+            compile.setStart(parseDouble(atts, "stamp"));
+            tree.reset(compile.getStart());
+            scopeDepth = 0;
+            compile.setICount(parseInt(atts, "count", 0));
+            compile.setBCount(parseInt(atts, "backedge_count", 0));
 
             String method = atts.getValue("method");
             int space = method.indexOf(' ');
@@ -294,18 +572,30 @@ public class LogParser extends DefaultHandler implements ErrorHandler, Constants
             }
             if (kind.equals("osr")) {
                 compile.setOsr(true);
-                compile.setOsr_bci(Integer.parseInt(search(atts, "osr_bci")));
+                compile.setOsr_bci(parseInt(atts, "osr_bci"));
             } else if (kind.equals("c2i")) {
                 compile.setSpecial("--- adapter " + method);
             } else {
                 compile.setSpecial(compile.getId() + " " + method + " (0 bytes)");
             }
-            events.add(compile);
-            compiles.put(makeId(atts), compile);
+            compileKey = makeId(atts);
+            ArrayList<UncommonTrapEvent> traps = pendingTraps.remove(compileKey);
+            if (traps != null) {
+                pendingTrapCount -= traps.size();
+                for (UncommonTrapEvent trap : traps) {
+                    trap.setCompilation(compile);
+                }
+            }
+            NMethod nm = nmethods.get(compileKey);
+            if (nm != null) {
+                associate(compile, nm);
+            } else {
+                compiles.put(compileKey, compile);
+            }
         } else if (qname.equals("type")) {
             type(search(atts, "id"), search(atts, "name"));
         } else if (qname.equals("bc")) {
-            bci = Integer.parseInt(search(atts, "bci"));
+            bci = parseInt(atts, "bci");
         } else if (qname.equals("klass")) {
             type(search(atts, "id"), search(atts, "name"));
         } else if (qname.equals("method")) {
@@ -314,50 +604,54 @@ public class LogParser extends DefaultHandler implements ErrorHandler, Constants
             m.setHolder(type(search(atts, "holder")));
             m.setName(search(atts, "name"));
             m.setReturnType(type(search(atts, "return")));
-            m.setArguments(search(atts, "arguments", "void"));
-            m.setBytes(search(atts, "bytes"));
-            m.setIICount(search(atts, "iicount"));
-            m.setFlags(search(atts, "flags"));
+            m.setArguments(arguments(atts.getValue("arguments")));
+            m.setBytes(parseInt(atts, "bytes"));
+            m.setFlags(parseInt(atts, "flags"));
+            m = symbols.intern(m);
             methods.put(id, m);
+            tree.setIICount(m.getId(), parseInt(atts, "iicount"));
         } else if (qname.equals("call")) {
-            site = new CallSite(bci, method(search(atts, "method")));
-            site.setCount(Integer.parseInt(search(atts, "count")));
+            site = tree.add(scopes[scopeDepth - 1], bci, method(search(atts, "method")).getId(),
+                            parseInt(atts, "count"));
             String receiver = atts.getValue("receiver");
             if (receiver != null) {
-                site.setReceiver(type(receiver));
-                site.setReceiver_count(Integer.parseInt(search(atts, "receiver_count")));
+                tree.setReceiver(site, type(receiver), parseInt(atts, "receiver_count"));
             }
-            scopes.peek().add(site);
         } else if (qname.equals("regalloc")) {
-            compile.setAttempts(Integer.parseInt(search(atts, "attempts")));
+            compile.setAttempts(parseInt(atts, "attempts"));
         } else if (qname.equals("inline_fail")) {
-            scopes.peek().last().setReason(search(atts, "reason"));
+            tree.setReason(tree.last(scopes[scopeDepth - 1], -1), Reason.valueOf(search(atts, "reason")));
         } else if (qname.equals("intrinsic")) {
-            scopes.peek().last().setIntrinsic(true);
+            tree.setIntrinsic(tree.last(scopes[scopeDepth - 1], -1));
         } else if (qname.equals("failure")) {
-            failureReason = search(atts, "reason");
+            failureReason = symbols.intern(search(atts, "reason"));
         } else if (qname.equals("task_done")) {
-            compile.setEnd(Double.parseDouble(search(atts, "stamp")));
-            if (Integer.parseInt(search(atts, "success")) == 0) {
+            compile.setEnd(parseDouble(atts, "stamp"));
+            if (parseInt(atts, "success") == 0) {
                 compile.setFailureReason(failureReason);
+                // a failed compilation never gets an NMethod
+                compiles.remove(compileKey);
             }
         } else if (qname.equals("make_not_entrant")) {
             String id = makeId(atts);
             NMethod nm = nmethods.get(id);
             if (nm == null) throw new InternalError();
-            LogEvent e = new MakeNotEntrantEvent(Double.parseDouble(search(atts, "stamp")), id,
+            MakeNotEntrantEvent e = new MakeNotEntrantEvent(parseDouble(atts, "stamp"), id,
                                                  atts.getValue("zombie") != null, nm);
-            events.add(e);
+            if (e.isZombie() && nm.getCompilation() != null) {
+                // nothing can refer to this nmethod anymore
+                nmethods.remove(id);
+            }
+            listener.onMakeNotEntrant(e);
         } else if (qname.equals("uncommon_trap")) {
             String id = atts.getValue("compile_id");
             if (id != null) {
                 id = makeId(atts);
-                currentTrap = new UncommonTrapEvent(Double.parseDouble(search(atts, "stamp")),
+                currentTrap = new UncommonTrapEvent(parseDouble(atts, "stamp"),
                         id,
-                        atts.getValue("reason"),
-                        atts.getValue("action"),
-                        Integer.parseInt(search(atts, "count", "0")));
-                events.add(currentTrap);
+                        Reason.valueOf(atts.getValue("reason")),
+                        Reason.valueOf(atts.getValue("action")),
+                        parseInt(atts, "count", 0));
             } else {
                 // uncommon trap inserted during parsing.
                 // ignore for now
@@ -365,55 +659,86 @@ public class LogParser extends DefaultHandler implements ErrorHandler, Constants
         } else if (qname.equals("jvms")) {
             // <jvms bci='4' method='java/io/DataInputStream readChar ()C' bytes='40' count='5815' iicount='20815'/>
             if (currentTrap != null) {
-                currentTrap.addJVMS(atts.getValue("method"), Integer.parseInt(atts.getValue("bci")));
+                currentTrap.addFrame(frameMethod(atts), parseInt(atts, "bci"));
             } else {
                 // Ignore <eliminate_allocation type='667'> and <eliminate_lock lock='1'>
             }
         } else if (qname.equals("nmethod")) {
             String id = makeId(atts);
-            NMethod nm = new NMethod(Double.parseDouble(search(atts, "stamp")),
+            NMethod nm = new NMethod(parseDouble(atts, "stamp"),
                     id,
-                    parseLong(atts.getValue("address")),
-                    parseLong(atts.getValue("size")));
+                    parseLong(atts, "address"),
+                    parseLong(atts, "size"));
+            String compiler = atts.getValue("compiler");
+            if (compiler != null) {
+                nm.setCompiler(symbols.intern(compiler));
+            }
             nmethods.put(id, nm);
-            events.add(nm);
+            Compilation c = compiles.remove(id);
+            // Native wrappers for methods don't have a compilation
+            if (c != null) {
+                associate(c, nm);
+            }
+            listener.onNMethod(nm);
         } else if (qname.equals("parse")) {
             Method m = method(search(atts, "method"));
-            if (scopes.size() == 0) {
+            if (scopeDepth == 0) {
                 compile.setMethod(m);
-                scopes.push(compile.getCall());
+                tree.setMethod(0, m.getId());
+                pushScope(0);
             } else {
-                if (site.getMethod() == m) {
-                    scopes.push(site);
-                } else if (scopes.peek().getCalls().size() > 2 && m == scopes.peek().last(-2).getMethod()) {
-                    scopes.push(scopes.peek().last(-2));
+                int scope = scopes[scopeDepth - 1];
+                if (site >= 0 && tree.getMethod(site) == m.getId()) {
+                    pushScope(site);
+                } else if (tree.childCount(scope) > 2 && m.getId() == tree.getMethod(tree.last(scope, -2))) {
+                    pushScope(tree.last(scope, -2));
                 } else {
-                    System.out.println(site.getMethod());
-                    System.out.println(m);
-                    throw new InternalError("call site and parse don't match");
+                    throw new InternalError("call site and parse don't match: "
+                            + (site >= 0 ? symbols.getMethod(tree.getMethod(site)) : null) + " and " + m);
                 }
             }
         } else if (qname.equals("parse_done")) {
-            CallSite call = scopes.pop();
-            call.setEndNodes(Integer.parseInt(search(atts, "nodes")));
-            call.setTimeStamp(Double.parseDouble(search(atts, "stamp")));
-            scopes.push(call);
+            int call = scopes[scopeDepth - 1];
+            tree.setEndNodes(call, parseInt(atts, "nodes"));
+            tree.setTimeStamp(call, parseDouble(atts, "stamp"));
         }
     }
 
+    private void pushScope(int node) {
+        if (scopeDepth == scopes.length) {
+            int[] newScopes = new int[scopes.length * 2];
+            System.arraycopy(scopes, 0, newScopes, 0, scopes.length);
+            scopes = newScopes;
+        }
+        scopes[scopeDepth++] = node;
+    }
+
     @Override
     public void endElement(String uri,
             String localName,
             String qname) {
         if (qname.equals("parse")) {
             indent -= 2;
-            scopes.pop();
+            scopeDepth--;
         } else if (qname.equals("uncommon_trap")) {
-            currentTrap = null;
+            if (currentTrap != null) {
+                linkTrap(currentTrap);
+                listener.onUncommonTrap(currentTrap);
+                currentTrap = null;
+            }
         } else if (qname.equals("task")) {
+            compile.setInlineTree(tree.build(symbols));
+            listener.onCompilation(compile);
+            if (compile.getNMethod() != null) {
+                // the VM appends the compilation logs when it exits, after
+                // every event that could refer to the nmethod
+                nmethods.remove(compileKey);
+            }
+            compile = null;
+            compileKey = null;
             types.clear();
             methods.clear();
-            site = null;
+            site = -1;
         }
     }
 
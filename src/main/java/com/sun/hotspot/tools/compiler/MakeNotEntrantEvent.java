@@ -26,7 +26,7 @@ package com.sun.hotspot.tools.compiler;
 
 import java.io.PrintStream;
 
-class MakeNotEntrantEvent extends BasicLogEvent {
+public class MakeNotEntrantEvent extends BasicLogEvent {
     private final boolean zombie;
 
     private NMethod nmethod;
@@ -0,0 +1,510 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import org.xml.sax.Attributes;
+
+/**
+ * A byte level tokenizer for LogCompilation output which drives a
+ * {@link LogParser} without going through SAX.
+ *
+ * The file is memory mapped in windows.  Only the tags the LogParser
+ * handles are reported; their names are mapped to constant Strings and
+ * their attributes are kept as offsets into the mapping, so numbers are
+ * parsed straight from the bytes and only textual values become Strings.
+ * All other markup is skipped without being decoded.
+ */
+class MappedLogParser {
+
+    static final long WINDOW = 1L << 28;
+    static final int MAX_TAG = 1 << 20;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String[] TAGS = {
+        "bc", "call", "failure", "inline_fail", "intrinsic", "jvms", "klass",
+        "make_not_entrant", "method", "nmethod", "parse", "parse_done",
+        "phase", "phase_done", "regalloc", "task", "task_done", "type",
+        "uncommon_trap"
+    };
+    private static final byte[][] TAG_BYTES = new byte[TAGS.length][];
+    static {
+        for (int i = 0; i < TAGS.length; i++) {
+            TAG_BYTES[i] = TAGS[i].getBytes(UTF_8);
+        }
+    }
+
+    private final FileChannel channel;
+    private final long size;
+    private final ByteAttributes atts = new ByteAttributes();
+    private MappedByteBuffer buf;
+    private long base;
+    private int limit;
+
+    MappedLogParser(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+    }
+
+    static void parse(String file, LogParser log) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            new MappedLogParser(raf.getChannel()).run(log);
+        }
+    }
+
+    private void map(long offset) throws IOException {
+        long length = Math.min(WINDOW, size - offset);
+        buf = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        base = offset;
+        limit = (int) length;
+        atts.buf = buf;
+    }
+
+    void run(LogParser log) throws IOException {
+        map(0);
+        int pos = 0;
+        while (true) {
+            while (pos < limit && buf.get(pos) != '<') {
+                pos++;
+            }
+            boolean last = base + limit >= size;
+            if (pos == limit) {
+                if (last) {
+                    return;
+                }
+                map(base + pos);
+                pos = 0;
+                continue;
+            }
+            if (limit - pos < MAX_TAG && !last) {
+                // make sure the whole tag is inside the window
+                map(base + pos);
+                pos = 0;
+            }
+            pos = element(log, pos);
+        }
+    }
+
+    /**
+     * Handles the markup starting at the '<' at pos and returns the
+     * position after it.
+     */
+    private int element(LogParser log, int pos) {
+        byte b = get(pos + 1);
+        if (b == '?') {
+            return skipPast(pos + 2, "?>");
+        } else if (b == '!') {
+            if (get(pos + 2) == '-' && get(pos + 3) == '-') {
+                return skipPast(pos + 4, "-->");
+            }
+            return skipTag(pos + 2);
+        } else if (b == '/') {
+            int start = pos + 2;
+            int end = nameEnd(start);
+            String qname = tag(start, end);
+            if (qname != null) {
+                log.endElement(null, null, qname);
+            }
+            return skipTag(end);
+        }
+
+        int start = pos + 1;
+        int end = nameEnd(start);
+        String qname = tag(start, end);
+        if (qname == null) {
+            return skipTag(end);
+        }
+        atts.clear();
+        pos = end;
+        while (true) {
+            pos = skipWhitespace(pos);
+            b = get(pos);
+            if (b == '>') {
+                log.startElement(null, null, qname, atts);
+                return pos + 1;
+            } else if (b == '/' && get(pos + 1) == '>') {
+                log.startElement(null, null, qname, atts);
+                log.endElement(null, null, qname);
+                return pos + 2;
+            }
+            int nameStart = pos;
+            pos = nameEnd(pos);
+            int nameEnd = pos;
+            pos = skipWhitespace(pos);
+            if (get(pos) != '=') {
+                // a value-less attribute, as written by some 1.5 VMs
+                if (pos == nameStart) {
+                    pos++;
+                }
+                continue;
+            }
+            pos = skipWhitespace(pos + 1);
+            byte quote = get(pos);
+            int valueStart = pos + 1;
+            pos = valueStart;
+            while (get(pos) != quote) {
+                pos++;
+            }
+            atts.add(nameStart, nameEnd, valueStart, pos);
+            pos++;
+        }
+    }
+
+    private byte get(int pos) {
+        if (pos >= limit) {
+            throw new InternalError("unterminated markup at offset " + (base + pos));
+        }
+        return buf.get(pos);
+    }
+
+    private int nameEnd(int pos) {
+        while (pos < limit) {
+            byte b = buf.get(pos);
+            if (b == ' ' || b == '>' || b == '/' || b == '=' || b == '\n' || b == '\r' || b == '\t') {
+                break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    private int skipWhitespace(int pos) {
+        while (pos < limit) {
+            byte b = buf.get(pos);
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    private int skipTag(int pos) {
+        byte quote = 0;
+        while (true) {
+            byte b = get(pos++);
+            if (quote != 0) {
+                if (b == quote) {
+                    quote = 0;
+                }
+            } else if (b == '\'' || b == '"') {
+                quote = b;
+            } else if (b == '>') {
+                return pos;
+            }
+        }
+    }
+
+    private int skipPast(int pos, String terminator) {
+        int n = terminator.length();
+        while (true) {
+            int i = 0;
+            while (i < n && get(pos + i) == terminator.charAt(i)) {
+                i++;
+            }
+            if (i == n) {
+                return pos + n;
+            }
+            pos++;
+        }
+    }
+
+    /**
+     * Maps a tag name to its constant String, or null if the LogParser
+     * doesn't care about it.
+     */
+    private String tag(int start, int end) {
+        int length = end - start;
+        outer:
+        for (int t = 0; t < TAG_BYTES.length; t++) {
+            byte[] name = TAG_BYTES[t];
+            if (name.length != length) {
+                continue;
+            }
+            for (int i = 0; i < length; i++) {
+                if (buf.get(start + i) != name[i]) {
+                    continue outer;
+                }
+            }
+            return TAGS[t];
+        }
+        return null;
+    }
+
+    /**
+     * The attributes of the current tag as offsets into the mapping.
+     */
+    static class ByteAttributes implements Attributes {
+        private static final double[] POWERS_OF_TEN = new double[23];
+        static {
+            double p = 1;
+            for (int i = 0; i < POWERS_OF_TEN.length; i++) {
+                POWERS_OF_TEN[i] = p;
+                p *= 10;
+            }
+        }
+
+        MappedByteBuffer buf;
+        private int[] offsets = new int[64];
+        private int length;
+
+        void clear() {
+            length = 0;
+        }
+
+        void add(int nameStart, int nameEnd, int valueStart, int valueEnd) {
+            if (length * 4 == offsets.length) {
+                int[] newOffsets = new int[offsets.length * 2];
+                System.arraycopy(offsets, 0, newOffsets, 0, offsets.length);
+                offsets = newOffsets;
+            }
+            int i = length * 4;
+            offsets[i] = nameStart;
+            offsets[i + 1] = nameEnd;
+            offsets[i + 2] = valueStart;
+            offsets[i + 3] = valueEnd;
+            length++;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        public int getIndex(String qName) {
+            int n = qName.length();
+            outer:
+            for (int a = 0; a < length; a++) {
+                int start = offsets[a * 4];
+                if (offsets[a * 4 + 1] - start != n) {
+                    continue;
+                }
+                for (int i = 0; i < n; i++) {
+                    if (buf.get(start + i) != qName.charAt(i)) {
+                        continue outer;
+                    }
+                }
+                return a;
+            }
+            return -1;
+        }
+
+        public String getQName(int index) {
+            return decode(offsets[index * 4], offsets[index * 4 + 1]);
+        }
+
+        public String getValue(int index) {
+            if (index < 0 || index >= length) {
+                return null;
+            }
+            return decode(offsets[index * 4 + 2], offsets[index * 4 + 3]);
+        }
+
+        public String getValue(String qName) {
+            return getValue(getIndex(qName));
+        }
+
+        int intValue(int index) {
+            int pos = offsets[index * 4 + 2];
+            int end = offsets[index * 4 + 3];
+            boolean negative = pos < end && buf.get(pos) == '-';
+            if (negative) {
+                pos++;
+            }
+            if (pos == end || end - pos > 9) {
+                return Integer.parseInt(getValue(index));
+            }
+            int result = 0;
+            for (; pos < end; pos++) {
+                int digit = buf.get(pos) - '0';
+                if (digit < 0 || digit > 9) {
+                    return Integer.parseInt(getValue(index));
+                }
+                result = result * 10 + digit;
+            }
+            return negative ? -result : result;
+        }
+
+        /**
+         * Stamps have a handful of digits, so the mantissa and the power of
+         * ten are exact doubles and their quotient is rounded the same way
+         * Double.parseDouble rounds.  Anything else takes the slow path.
+         */
+        double doubleValue(int index) {
+            int pos = offsets[index * 4 + 2];
+            int end = offsets[index * 4 + 3];
+            boolean negative = pos < end && buf.get(pos) == '-';
+            if (negative) {
+                pos++;
+            }
+            long mantissa = 0;
+            int digits = 0;
+            int fraction = -1;
+            for (; pos < end; pos++) {
+                byte b = buf.get(pos);
+                if (b == '.' && fraction < 0) {
+                    fraction = 0;
+                    continue;
+                }
+                int digit = b - '0';
+                if (digit < 0 || digit > 9 || ++digits > 15) {
+                    return Double.parseDouble(getValue(index));
+                }
+                mantissa = mantissa * 10 + digit;
+                if (fraction >= 0) {
+                    fraction++;
+                }
+            }
+            if (digits == 0) {
+                return Double.parseDouble(getValue(index));
+            }
+            double result = fraction > 0 ? mantissa / POWERS_OF_TEN[fraction] : mantissa;
+            return negative ? -result : result;
+        }
+
+        /**
+         * Parses a decimal or 0x prefixed hexadecimal value.  Hex values
+         * wrap around like the ones handled by LogParser.parseLong.
+         */
+        long longValue(int index) {
+            int pos = offsets[index * 4 + 2];
+            int end = offsets[index * 4 + 3];
+            if (end - pos > 2 && buf.get(pos) == '0' && (buf.get(pos + 1) == 'x' || buf.get(pos + 1) == 'X')) {
+                if (end - pos > 18) {
+                    return Long.decode(getValue(index));
+                }
+                long result = 0;
+                for (pos += 2; pos < end; pos++) {
+                    int digit = Character.digit(buf.get(pos), 16);
+                    if (digit < 0) {
+                        return Long.decode(getValue(index));
+                    }
+                    result = (result << 4) | digit;
+                }
+                return result;
+            }
+            if (end == pos || end - pos > 18) {
+                return Long.decode(getValue(index));
+            }
+            long result = 0;
+            for (; pos < end; pos++) {
+                int digit = buf.get(pos) - '0';
+                if (digit < 0 || digit > 9) {
+                    return Long.decode(getValue(index));
+                }
+                result = result * 10 + digit;
+            }
+            return result;
+        }
+
+        private String decode(int start, int end) {
+            char[] chars = new char[end - start];
+            int n = 0;
+            for (int pos = start; pos < end; pos++) {
+                byte b = buf.get(pos);
+                if (b < 0) {
+                    return decodeSlow(start, end);
+                }
+                if (b == '&') {
+                    int semicolon = pos;
+                    while (semicolon < end && buf.get(semicolon) != ';') {
+                        semicolon++;
+                    }
+                    chars[n++] = entity(pos + 1, semicolon);
+                    pos = semicolon;
+                } else {
+                    chars[n++] = (char) b;
+                }
+            }
+            return new String(chars, 0, n);
+        }
+
+        private String decodeSlow(int start, int end) {
+            byte[] bytes = new byte[end - start];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = buf.get(start + i);
+            }
+            String s = new String(bytes, UTF_8);
+            return s.indexOf('&') < 0 ? s : s.replace("&lt;", "<").replace("&gt;", ">")
+                    .replace("&quot;", "\"").replace("&apos;", "'").replace("&amp;", "&");
+        }
+
+        private char entity(int start, int end) {
+            StringBuilder sb = new StringBuilder(end - start);
+            for (int i = start; i < end; i++) {
+                sb.append((char) buf.get(i));
+            }
+            String name = sb.toString();
+            if (name.equals("lt")) {
+                return '<';
+            } else if (name.equals("gt")) {
+                return '>';
+            } else if (name.equals("amp")) {
+                return '&';
+            } else if (name.equals("quot")) {
+                return '"';
+            } else if (name.equals("apos")) {
+                return '\'';
+            } else if (name.startsWith("#x")) {
+                return (char) Integer.parseInt(name.substring(2), 16);
+            } else if (name.startsWith("#")) {
+                return (char) Integer.parseInt(name.substring(1));
+            }
+            throw new InternalError("unknown entity &" + name + ";");
+        }
+
+        public String getURI(int index) {
+            return "";
+        }
+
+        public String getLocalName(int index) {
+            return getQName(index);
+        }
+
+        public String getType(int index) {
+            return "CDATA";
+        }
+
+        public int getIndex(String uri, String localName) {
+            return getIndex(localName);
+        }
+
+        public String getType(String uri, String localName) {
+            return getType(localName);
+        }
+
+        public String getType(String qName) {
+            return getIndex(qName) >= 0 ? "CDATA" : null;
+        }
+
+        public String getValue(String uri, String localName) {
+            return getValue(localName);
+        }
+    }
+}
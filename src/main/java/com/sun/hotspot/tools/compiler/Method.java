@@ -28,16 +28,19 @@ import java.util.Arrays;
 
 public class Method implements Constants {
 
+    private int id = -1;
     private String holder;
     private String name;
     private String returnType;
     private String arguments;
-    private String bytes;
-    private String iicount;
-    private String flags;
+    private int bytes;
+    private int flags;
+    // only known from a JVM state so far, bytes and flags may be missing.
+    // Volatile, the SymbolTable fills them in while other threads parse.
+    private volatile boolean partial;
 
     String decodeFlags(int osr_bci) {
-        int f = Integer.parseInt(getFlags());
+        int f = getFlags();
         char[] c = new char[4];
         Arrays.fill(c, ' ');
         if (osr_bci >= 0) {
@@ -62,6 +65,25 @@ public class Method implements Constants {
         return getHolder().replace('/', '.') + "::" + getName() + " (" + getBytes() + " bytes)";
     }
 
+    /**
+     * The id assigned by the {@link SymbolTable}, or -1.
+     */
+    public int getId() {
+        return id;
+    }
+
+    void setId(int id) {
+        this.id = id;
+    }
+
+    boolean isPartial() {
+        return partial;
+    }
+
+    void setPartial(boolean partial) {
+        this.partial = partial;
+    }
+
     public String getHolder() {
         return holder;
     }
@@ -94,27 +116,27 @@ public class Method implements Constants {
         this.arguments = arguments;
     }
 
-    public String getBytes() {
-        return bytes;
+    /**
+     * The descriptor of the arguments and the return type, which tells
+     * overloads apart.
+     */
+    public String getSignature() {
+        return Descriptors.signature(this);
     }
 
-    public void setBytes(String bytes) {
-        this.bytes = bytes;
-    }
-
-    public String getIICount() {
-        return iicount;
+    public int getBytes() {
+        return bytes;
     }
 
-    public void setIICount(String iicount) {
-        this.iicount = iicount;
+    public void setBytes(int bytes) {
+        this.bytes = bytes;
     }
 
-    public String getFlags() {
+    public int getFlags() {
         return flags;
     }
 
-    public void setFlags(String flags) {
+    public void setFlags(int flags) {
         this.flags = flags;
     }
 }
@@ -30,6 +30,7 @@ public class NMethod extends BasicLogEvent {
 
     private long address;
     private long size;
+    private String compiler;
 
     NMethod(double s, String i, long a, long sz) {
         super(s, i);
@@ -57,4 +58,16 @@ public class NMethod extends BasicLogEvent {
     public void setSize(long size) {
         this.size = size;
     }
+
+    /**
+     * The compiler that produced the nmethod, e.g. C1 or C2, or null for
+     * logs that don't say.
+     */
+    public String getCompiler() {
+        return compiler;
+    }
+
+    public void setCompiler(String compiler) {
+        this.compiler = compiler;
+    }
 }
@@ -0,0 +1,381 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decompresses a gzip file whose members are inflated in parallel, ahead of
+ * the reader.
+ *
+ * Where a member ends is only known once it is inflated, so every position
+ * that looks like a member header is a candidate, and a member is inflated
+ * from each candidate at the same time.  The reader takes the output of the
+ * member that starts where the previous one ended, and cancels the
+ * candidates in between, which were bytes of compressed data that happened
+ * to look like a header.  A file with a single member is simply inflated
+ * on one thread while the reader works on the other.
+ *
+ * Headers are searched for a block at a time as the output is read, and
+ * no more than twice as many members as threads are started ahead.  Each
+ * keeps up to QUEUE chunks of CHUNK bytes, which bounds the memory used for
+ * reading ahead.
+ */
+class ParallelGzipInputStream extends InputStream {
+
+    static final int CHUNK = 64 * 1024;
+    static final int QUEUE = 16;
+
+    private static final byte[] END = new byte[0];
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    private static final int RESERVED = 0xe0;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long size;
+    private final int window;
+    private final ExecutorService executor;
+    /** the members being inflated, by start */
+    private final ArrayDeque<Member> members = new ArrayDeque<Member>();
+    /** everything before it has been searched for headers */
+    private long scanned;
+    private final ByteBuffer scanBuffer = ByteBuffer.allocate(CHUNK + 2);
+
+    /** the start of the member being read */
+    private long position;
+    private Member current;
+    private byte[] chunk = END;
+    private int offset;
+    private boolean done;
+
+    ParallelGzipInputStream(String fileName, int parallelism) throws IOException {
+        file = new RandomAccessFile(fileName, "r");
+        channel = file.getChannel();
+        size = channel.size();
+        window = Math.max(2, parallelism * 2);
+        executor = Executors.newFixedThreadPool(Math.max(1, parallelism), new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "gzip member");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        if (!isHeader(0)) {
+            close();
+            throw new IOException(fileName + " is not in gzip format");
+        }
+    }
+
+    /**
+     * True if the file starts with the gzip magic number.
+     */
+    static boolean isCompressed(String fileName) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(fileName, "r")) {
+            return raf.length() >= 2 && raf.read() == 0x1f && raf.read() == 0x8b;
+        }
+    }
+
+    private boolean isHeader(long at) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        while (header.hasRemaining() && channel.read(header, at + header.position()) > 0) {
+        }
+        return header.position() == 4 && isHeader(header.get(0), header.get(1), header.get(2), header.get(3));
+    }
+
+    private static boolean isHeader(byte id1, byte id2, byte cm, byte flags) {
+        return id1 == (byte) 0x1f && id2 == (byte) 0x8b && cm == 8 && (flags & RESERVED) == 0;
+    }
+
+    /**
+     * Searches the next block of the file for headers and starts inflating
+     * a member at each one found.
+     */
+    private void scan() throws IOException {
+        scanBuffer.clear();
+        while (scanBuffer.hasRemaining() && channel.read(scanBuffer, scanned + scanBuffer.position()) > 0) {
+        }
+        int n = scanBuffer.position();
+        for (int i = 0; i + 3 < n; i++) {
+            if (isHeader(scanBuffer.get(i), scanBuffer.get(i + 1), scanBuffer.get(i + 2), scanBuffer.get(i + 3))) {
+                Member member = new Member(scanned + i);
+                member.future = executor.submit(member);
+                members.add(member);
+            }
+        }
+        // a header may start in the last bytes
+        scanned = n > 3 ? scanned + n - 3 : size;
+    }
+
+    /**
+     * Moves on to the member starting at the position, or ends the stream
+     * if no member starts there.  Trailing garbage is ignored, like
+     * GZIPInputStream does.
+     */
+    private void next() throws IOException {
+        while (!members.isEmpty() && members.peekFirst().start < position) {
+            members.pollFirst().cancel();
+        }
+        // candidates inside the members read so far don't matter
+        scanned = Math.max(scanned, position);
+        while (members.isEmpty() && scanned < size) {
+            scan();
+        }
+        if (members.isEmpty() || members.peekFirst().start != position) {
+            done = true;
+        } else {
+            current = members.pollFirst();
+        }
+    }
+
+    private boolean fill() throws IOException {
+        while (offset == chunk.length) {
+            if (done) {
+                return false;
+            }
+            if (current == null) {
+                next();
+                continue;
+            }
+            try {
+                chunk = current.output.take();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            offset = 0;
+            if (chunk == END) {
+                if (current.failure != null) {
+                    throw new IOException("corrupt gzip member at " + current.start, current.failure);
+                }
+                position = current.end;
+                current = null;
+            } else if (members.size() < window && scanned < size) {
+                // keep looking for members a block at a time, far ahead
+                // of the output
+                scan();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return chunk[offset++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int n = Math.min(len, chunk.length - offset);
+        System.arraycopy(chunk, offset, b, off, n);
+        offset += n;
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        done = true;
+        file.close();
+    }
+
+    /**
+     * Inflates the member starting at a candidate position.
+     */
+    class Member implements Runnable {
+        final long start;
+        final BlockingQueue<byte[]> output = new ArrayBlockingQueue<byte[]>(QUEUE);
+        Future<?> future;
+        volatile long end;
+        volatile Exception failure;
+        private volatile boolean cancelled;
+
+        Member(long start) {
+            this.start = start;
+        }
+
+        /**
+         * Stops inflating.  Not by interrupting the thread, an interrupt
+         * during a read closes the channel all members share.
+         */
+        void cancel() {
+            cancelled = true;
+            future.cancel(false);
+            // a put waiting on the full queue goes through and sees the flag
+            output.clear();
+        }
+
+        public void run() {
+            try {
+                inflate();
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException | DataFormatException | RuntimeException e) {
+                failure = e;
+            }
+            if (cancelled) {
+                return;
+            }
+            try {
+                output.put(END);
+            } catch (InterruptedException e) {
+                // cancelled, nobody reads it
+            }
+        }
+
+        private void inflate() throws IOException, DataFormatException, InterruptedException {
+            In in = new In(start);
+            int flags = in.header();
+            if ((flags & FEXTRA) != 0) {
+                in.skip(in.read() | in.read() << 8);
+            }
+            if ((flags & FNAME) != 0) {
+                while (in.read() != 0) {
+                }
+            }
+            if ((flags & FCOMMENT) != 0) {
+                while (in.read() != 0) {
+                }
+            }
+            if ((flags & FHCRC) != 0) {
+                in.skip(2);
+            }
+            Inflater inflater = new Inflater(true);
+            CRC32 crc = new CRC32();
+            long dataStart = in.position;
+            try {
+                byte[] buffer = new byte[CHUNK];
+                int n = 0;
+                while (!inflater.finished()) {
+                    if (inflater.needsInput()) {
+                        in.feed(inflater);
+                    } else if (inflater.needsDictionary()) {
+                        throw new DataFormatException("dictionary needed");
+                    }
+                    n += inflater.inflate(buffer, n, buffer.length - n);
+                    if (n == buffer.length) {
+                        crc.update(buffer, 0, n);
+                        output.put(buffer);
+                        buffer = new byte[CHUNK];
+                        n = 0;
+                    }
+                    if (cancelled) {
+                        return;
+                    }
+                }
+                if (n > 0) {
+                    crc.update(buffer, 0, n);
+                    byte[] last = new byte[n];
+                    System.arraycopy(buffer, 0, last, 0, n);
+                    output.put(last);
+                }
+                in.position = dataStart + inflater.getBytesRead();
+            } finally {
+                inflater.end();
+            }
+            long expected = in.read() | in.read() << 8 | in.read() << 16 | (long) in.read() << 24;
+            in.skip(4);
+            if (expected != crc.getValue()) {
+                throw new IOException("CRC mismatch");
+            }
+            end = in.position;
+        }
+    }
+
+    /**
+     * Positional reads of the compressed bytes, independent of the other
+     * members.
+     */
+    class In {
+        long position;
+        private final ByteBuffer buffer = ByteBuffer.allocate(CHUNK);
+
+        In(long position) {
+            this.position = position;
+        }
+
+        int header() throws IOException {
+            if (read() != 0x1f || read() != 0x8b || read() != 8) {
+                throw new IOException("not a gzip header");
+            }
+            int flags = read();
+            // mtime, extra flags and os
+            skip(6);
+            return flags;
+        }
+
+        int read() throws IOException {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            if (channel.read(b, position) <= 0) {
+                throw new EOFException();
+            }
+            position++;
+            return b.get(0) & 0xff;
+        }
+
+        void skip(long n) throws IOException {
+            position += n;
+            if (position > size) {
+                throw new EOFException();
+            }
+        }
+
+        void feed(Inflater inflater) throws IOException {
+            buffer.clear();
+            int n = channel.read(buffer, position);
+            if (n <= 0) {
+                throw new EOFException();
+            }
+            position += n;
+            inflater.setInput(buffer.array(), 0, n);
+        }
+    }
+}
@@ -0,0 +1,350 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Parses a single log file on a fork/join pool.
+ *
+ * The per thread compilation logs consist of self contained task elements,
+ * so the file is cut into chunks of whole tasks which are parsed
+ * independently.  Everything outside of the tasks (the tty section with
+ * the nmethod, uncommon_trap and make_not_entrant events) is still well
+ * formed once the tasks are removed, and is parsed as one more chunk.
+ * NMethods and compilations are associated when the partial results are
+ * merged, and the events end up in the same order as a serial parse.
+ *
+ * This doesn't scale linearly with the cores: finding the tasks is a
+ * serial scan over the whole file, though only for a few bytes per line,
+ * and the tty section is a single chunk.  The tty section only has one
+ * line per nmethod, trap and make_not_entrant, much less than the tasks,
+ * but a log with inlining turned off is mostly tty and barely gains.
+ */
+class ParallelLogParser {
+
+    static final int MIN_CHUNK_SIZE = 1 << 20;
+
+    private static final byte[] TASK_START = "<task ".getBytes();
+    private static final byte[] TASK_END = "</task>".getBytes();
+
+    public static ArrayList<LogEvent> parse(String file, boolean cleanup, int parallelism) throws Exception {
+        return parse(file, cleanup, parallelism, MIN_CHUNK_SIZE);
+    }
+
+    static ArrayList<LogEvent> parse(String file, boolean cleanup, int parallelism, long minChunkSize)
+            throws Exception {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            long[] tasks = findTasks(channel);
+            long chunkSize = Math.max(minChunkSize, channel.size() / (parallelism * 8L));
+            ArrayList<long[]> chunks = split(tasks, chunkSize);
+            chunks.add(0, complement(tasks, channel.size()));
+
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            Result result;
+            try {
+                result = pool.invoke(new ChunkTask(channel, cleanup, new SymbolTable(), chunks, 0, chunks.size()));
+            } catch (RuntimeException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            } finally {
+                pool.shutdown();
+            }
+
+            // Associate compilations with their NMethods
+            for (Map.Entry<String, Compilation> entry : result.compiles.entrySet()) {
+                NMethod nm = result.nmethods.get(entry.getKey());
+                if (nm != null) {
+                    LogParser.associate(entry.getValue(), nm);
+                }
+            }
+
+            // and traps with the compilations they happened in
+            for (LogEvent e : result.events) {
+                if (e instanceof UncommonTrapEvent && e.getCompilation() == null) {
+                    NMethod nm = result.nmethods.get(((UncommonTrapEvent) e).getId());
+                    if (nm != null && nm.getCompilation() != null) {
+                        ((UncommonTrapEvent) e).setCompilation(nm.getCompilation());
+                    }
+                }
+            }
+
+            Collections.sort(result.events, LogParser.sortByStart);
+            return result.events;
+        }
+    }
+
+    /**
+     * Returns the byte ranges of all complete task elements as start/end
+     * pairs.  A task element always starts and ends on its own line.
+     */
+    static long[] findTasks(FileChannel channel) throws IOException {
+        LongList ranges = new LongList();
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        byte[] prefix = new byte[TASK_END.length];
+        int prefixLength = 0;
+        long taskStart = -1;
+        boolean taskEnding = false;
+        long lineStart = 0;
+        long pos = 0;
+
+        while (channel.read(buffer, pos) > 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                if (prefixLength < prefix.length && b != '\n') {
+                    prefix[prefixLength++] = b;
+                    if (prefixLength == TASK_START.length && startsWith(prefix, TASK_START)) {
+                        taskStart = lineStart;
+                    } else if (prefixLength == TASK_END.length && startsWith(prefix, TASK_END) && taskStart >= 0) {
+                        taskEnding = true;
+                    }
+                }
+                if (b == '\n') {
+                    if (taskEnding) {
+                        ranges.add(taskStart);
+                        ranges.add(pos + 1);
+                        taskStart = -1;
+                        taskEnding = false;
+                    }
+                    lineStart = pos + 1;
+                    prefixLength = 0;
+                }
+                pos++;
+            }
+            buffer.clear();
+        }
+        if (taskEnding) {
+            ranges.add(taskStart);
+            ranges.add(pos);
+        }
+        return ranges.toArray();
+    }
+
+    private static boolean startsWith(byte[] prefix, byte[] token) {
+        for (int i = 0; i < token.length; i++) {
+            if (prefix[i] != token[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Groups consecutive task ranges into chunks of at least chunkSize bytes.
+     */
+    static ArrayList<long[]> split(long[] tasks, long chunkSize) {
+        ArrayList<long[]> chunks = new ArrayList<long[]>();
+        int first = 0;
+        for (int i = 0; i < tasks.length; i += 2) {
+            if (tasks[i + 1] - tasks[first] >= chunkSize || i + 2 == tasks.length) {
+                long[] chunk = new long[i + 2 - first];
+                System.arraycopy(tasks, first, chunk, 0, chunk.length);
+                chunks.add(chunk);
+                first = i + 2;
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * Returns the ranges of the file which are not covered by any task.
+     */
+    static long[] complement(long[] tasks, long size) {
+        LongList ranges = new LongList();
+        long pos = 0;
+        for (int i = 0; i < tasks.length; i += 2) {
+            if (tasks[i] > pos) {
+                ranges.add(pos);
+                ranges.add(tasks[i]);
+            }
+            pos = tasks[i + 1];
+        }
+        if (pos < size) {
+            ranges.add(pos);
+            ranges.add(size);
+        }
+        return ranges.toArray();
+    }
+
+    static class Result {
+        final ArrayList<LogEvent> events;
+        final HashMap<String, Compilation> compiles;
+        final HashMap<String, NMethod> nmethods;
+
+        Result(ArrayList<LogEvent> events, HashMap<String, Compilation> compiles, HashMap<String, NMethod> nmethods) {
+            this.events = events;
+            this.compiles = compiles;
+            this.nmethods = nmethods;
+        }
+
+        Result merge(Result other) {
+            events.addAll(other.events);
+            compiles.putAll(other.compiles);
+            nmethods.putAll(other.nmethods);
+            return this;
+        }
+    }
+
+    static class ChunkTask extends RecursiveTask<Result> {
+        private final FileChannel channel;
+        private final boolean cleanup;
+        private final SymbolTable symbols;
+        private final ArrayList<long[]> chunks;
+        private final int from;
+        private final int to;
+
+        ChunkTask(FileChannel channel, boolean cleanup, SymbolTable symbols, ArrayList<long[]> chunks, int from, int to) {
+            this.channel = channel;
+            this.cleanup = cleanup;
+            this.symbols = symbols;
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Result compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                ChunkTask right = new ChunkTask(channel, cleanup, symbols, chunks, middle, to);
+                right.fork();
+                Result left = new ChunkTask(channel, cleanup, symbols, chunks, from, middle).compute();
+                return left.merge(right.join());
+            }
+            try {
+                return parseChunk();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private Result parseChunk() throws Exception {
+            LogParser.EventCollector collector = new LogParser.EventCollector();
+            LogParser log = new LogParser(collector, symbols);
+            InputStream in = new RangeInputStream(channel, chunks.get(from));
+            if (from > 0) {
+                // task chunks need a root element to be a well formed document
+                in = new SequenceInputStream(new SequenceInputStream(
+                        new ByteArrayInputStream("<compilation_log>".getBytes()), in),
+                        new ByteArrayInputStream("</compilation_log>".getBytes()));
+            }
+            LogParser.parse(new InputStreamReader(in), cleanup, log);
+            return new Result(collector.events, log.compiles, log.nmethods);
+        }
+    }
+
+    /**
+     * Reads a list of byte ranges of a file as one stream.  Uses positional
+     * reads, so many of these can share a channel.
+     */
+    static class RangeInputStream extends InputStream {
+        private final FileChannel channel;
+        private final long[] ranges;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        private int range;
+        private long pos;
+
+        RangeInputStream(FileChannel channel, long[] ranges) {
+            this.channel = channel;
+            this.ranges = ranges;
+            this.pos = ranges.length > 0 ? ranges[0] : 0;
+            buffer.flip();
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (!buffer.hasRemaining() && !fill()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        private boolean fill() throws IOException {
+            while (range < ranges.length && pos >= ranges[range + 1]) {
+                range += 2;
+                if (range < ranges.length) {
+                    pos = ranges[range];
+                }
+            }
+            if (range >= ranges.length) {
+                return false;
+            }
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), ranges[range + 1] - pos));
+            int n = channel.read(buffer, pos);
+            buffer.flip();
+            if (n <= 0) {
+                return false;
+            }
+            pos += n;
+            return true;
+        }
+    }
+
+    static class LongList {
+        private long[] values = new long[64];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                long[] newValues = new long[size * 2];
+                System.arraycopy(values, 0, newValues, 0, size);
+                values = newValues;
+            }
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            long[] result = new long[size];
+            System.arraycopy(values, 0, result, 0, size);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An interned reason string, used for inlining failures and for the reason
+ * and action of uncommon traps.  The same few dozen texts repeat thousands
+ * of times in a log, so each gets one instance with a small code which can
+ * be compared by identity or used as an array index.
+ */
+public final class Reason {
+
+    private static final ConcurrentHashMap<String, Reason> byText = new ConcurrentHashMap<String, Reason>();
+    // copied on write, new reasons are rare once a log is under way and
+    // forCode is called for every node shown
+    private static volatile Reason[] byCode = new Reason[0];
+    private static final Object lock = new Object();
+
+    private final int code;
+    private final String text;
+
+    private Reason(int code, String text) {
+        this.code = code;
+        this.text = text;
+    }
+
+    public static Reason valueOf(String text) {
+        if (text == null) {
+            return null;
+        }
+        Reason reason = byText.get(text);
+        if (reason != null) {
+            return reason;
+        }
+        synchronized (lock) {
+            reason = byText.get(text);
+            if (reason == null) {
+                Reason[] codes = byCode;
+                reason = new Reason(codes.length, text);
+                Reason[] newCodes = new Reason[codes.length + 1];
+                System.arraycopy(codes, 0, newCodes, 0, codes.length);
+                newCodes[codes.length] = reason;
+                // published by code first, whoever finds it by text can
+                // look its code up
+                byCode = newCodes;
+                byText.put(text, reason);
+            }
+            return reason;
+        }
+    }
+
+    public static Reason forCode(int code) {
+        return byCode[code];
+    }
+
+    /**
+     * The number of distinct reasons seen so far, all codes are below it.
+     */
+    public static int count() {
+        return byCode.length;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Connects the compilations of each method, OSR and normal ones alike,
+ * in the order they started.  Every link has the nmethod the compilation
+ * produced, when that nmethod was made not entrant and the trap in its
+ * code that most likely caused it.  Compile time of compilations whose
+ * code didn't survive, or that failed, is counted as wasted.
+ */
+public class RecompilationChains {
+
+    public static class Link {
+        private final Compilation compilation;
+        private double invalidated = Double.NaN;
+        private double replaced = Double.NaN;
+        private UncommonTrapEvent cause;
+
+        Link(Compilation compilation) {
+            this.compilation = compilation;
+        }
+
+        public Compilation getCompilation() {
+            return compilation;
+        }
+
+        public NMethod getNMethod() {
+            return compilation.getNMethod();
+        }
+
+        public boolean isInvalidated() {
+            return !Double.isNaN(invalidated);
+        }
+
+        /**
+         * When the nmethod was made not entrant, NaN if it never was.
+         */
+        public double getInvalidated() {
+            return invalidated;
+        }
+
+        /**
+         * When the next compilation of the method for the same entry
+         * installed its code, NaN if none did.
+         */
+        public double getReplaced() {
+            return replaced;
+        }
+
+        /**
+         * The last trap in the nmethod before it was made not entrant, or
+         * null.
+         */
+        public UncommonTrapEvent getCause() {
+            return cause;
+        }
+
+        /**
+         * How long the nmethod was in use: until it was made not entrant,
+         * else until newer code replaced it, else until the given end of
+         * the log.
+         */
+        public double getLifetime(double end) {
+            NMethod nm = getNMethod();
+            if (nm == null) {
+                return 0;
+            }
+            if (isInvalidated()) {
+                end = invalidated;
+            } else if (!Double.isNaN(replaced)) {
+                end = replaced;
+            }
+            return end - nm.getStart();
+        }
+
+        public boolean isWasted() {
+            return getNMethod() == null || isInvalidated();
+        }
+    }
+
+    public static class Chain {
+        private final Method method;
+        private final List<Link> links = new ArrayList<Link>();
+
+        Chain(Method method) {
+            this.method = method;
+        }
+
+        public Method getMethod() {
+            return method;
+        }
+
+        public List<Link> getLinks() {
+            return Collections.unmodifiableList(links);
+        }
+
+        public double getCompileTime() {
+            double time = 0;
+            for (Link link : links) {
+                if (link.getCompilation().hasEnd()) {
+                    time += link.getCompilation().getElapsedTime();
+                }
+            }
+            return time;
+        }
+
+        public double getWastedTime() {
+            double time = 0;
+            for (Link link : links) {
+                if (link.isWasted() && link.getCompilation().hasEnd()) {
+                    time += link.getCompilation().getElapsedTime();
+                }
+            }
+            return time;
+        }
+
+        public int getInvalidations() {
+            int n = 0;
+            for (Link link : links) {
+                if (link.isInvalidated()) {
+                    n++;
+                }
+            }
+            return n;
+        }
+
+        /**
+         * Ends every nmethod at the install of the next one for the same
+         * entry, the normal one or the OSR one at the same bci.
+         */
+        void linkReplacements() {
+            for (int i = 0; i < links.size(); i++) {
+                Link link = links.get(i);
+                if (link.getNMethod() == null) {
+                    continue;
+                }
+                Compilation c = link.getCompilation();
+                for (int j = i + 1; j < links.size(); j++) {
+                    Compilation next = links.get(j).getCompilation();
+                    if (next.getNMethod() != null && next.isOsr() == c.isOsr()
+                            && next.getOsr_bci() == c.getOsr_bci()
+                            && next.getNMethod().getStart() >= link.getNMethod().getStart()) {
+                        link.replaced = next.getNMethod().getStart();
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private final List<Chain> chains = new ArrayList<Chain>();
+    private double end;
+
+    /**
+     * Builds the chains of the events, which must be sorted by start.
+     */
+    public RecompilationChains(List<LogEvent> events) {
+        Map<Method, Chain> byMethod = new LinkedHashMap<Method, Chain>();
+        Map<NMethod, Link> byNMethod = new IdentityHashMap<NMethod, Link>();
+        Map<Compilation, Link> byCompilation = new IdentityHashMap<Compilation, Link>();
+        for (LogEvent e : events) {
+            end = Math.max(end, e.getStart());
+            if (e instanceof Compilation) {
+                Compilation c = (Compilation) e;
+                if (c.getMethod() == null) {
+                    continue;
+                }
+                Chain chain = byMethod.get(c.getMethod());
+                if (chain == null) {
+                    chain = new Chain(c.getMethod());
+                    byMethod.put(c.getMethod(), chain);
+                }
+                Link link = new Link(c);
+                chain.links.add(link);
+                byCompilation.put(c, link);
+                if (c.getNMethod() != null) {
+                    byNMethod.put(c.getNMethod(), link);
+                }
+            }
+        }
+        // traps and invalidations come before the tasks in the log, so
+        // they are matched once all links exist
+        for (LogEvent e : events) {
+            if (e instanceof UncommonTrapEvent && e.getCompilation() != null) {
+                Link link = byCompilation.get(e.getCompilation());
+                if (link != null && !link.isInvalidated()) {
+                    link.cause = (UncommonTrapEvent) e;
+                }
+            } else if (e instanceof MakeNotEntrantEvent) {
+                MakeNotEntrantEvent mne = (MakeNotEntrantEvent) e;
+                Link link = mne.getNMethod() != null ? byNMethod.get(mne.getNMethod()) : null;
+                if (link != null && !link.isInvalidated()) {
+                    link.invalidated = mne.getStart();
+                }
+            }
+        }
+        for (Chain chain : byMethod.values()) {
+            chain.linkReplacements();
+        }
+        chains.addAll(byMethod.values());
+        Collections.sort(chains, new Comparator<Chain>() {
+            public int compare(Chain a, Chain b) {
+                int result = Double.compare(b.getWastedTime(), a.getWastedTime());
+                return result != 0 ? result : b.links.size() - a.links.size();
+            }
+        });
+    }
+
+    /**
+     * All chains, the ones that wasted the most compile time first.
+     */
+    public List<Chain> getChains() {
+        return Collections.unmodifiableList(chains);
+    }
+
+    public void print(PrintStream out, int limit) {
+        double total = 0;
+        double wasted = 0;
+        for (Chain chain : chains) {
+            total += chain.getCompileTime();
+            wasted += chain.getWastedTime();
+        }
+        out.printf("Compile time %.3fs, %.3fs of it wasted on code that was thrown away or failed\n", total, wasted);
+        int n = 0;
+        for (Chain chain : chains) {
+            if (chain.links.size() < 2) {
+                continue;
+            }
+            if (n++ == limit) {
+                break;
+            }
+            out.printf("%s: %d compiles, %d invalidated, compile time %.4fs, wasted %.4fs\n", chain.getMethod(),
+                    chain.links.size(), chain.getInvalidations(), chain.getCompileTime(), chain.getWastedTime());
+            for (Link link : chain.links) {
+                Compilation c = link.getCompilation();
+                out.printf("  %6d %s %8.3f %7s", c.getId(), c.isOsr() ? "osr@" + c.getOsr_bci() : "   ",
+                        c.getStart(), c.hasEnd() ? String.format("%6.4fs", c.getElapsedTime()) : "?");
+                if (link.getNMethod() == null) {
+                    out.print(" failed");
+                    if (c.getFailureReason() != null) {
+                        out.print(": " + c.getFailureReason());
+                    }
+                } else if (link.isInvalidated()) {
+                    out.printf(" not entrant at %.3f after %.3fs", link.getInvalidated(), link.getLifetime(end));
+                    if (link.getCause() != null) {
+                        UncommonTrapEvent trap = link.getCause();
+                        out.printf(" (%s %s", trap.getReason(), trap.getAction());
+                        if (trap.getFrameCount() > 0) {
+                            out.printf(" @%d %s", trap.getFrameBci(0), trap.getFrameMethod(0));
+                        }
+                        out.print(")");
+                    }
+                } else if (!Double.isNaN(link.getReplaced())) {
+                    out.printf(" replaced at %.3f after %.3fs", link.getReplaced(), link.getLifetime(end));
+                } else {
+                    out.printf(" live for %.3fs", link.getLifetime(end));
+                }
+                out.println();
+            }
+        }
+    }
+}
@@ -0,0 +1,617 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A compact binary copy of a parsed log, kept next to the log so that
+ * opening it again doesn't have to run SAX over the whole file.
+ *
+ * The snapshot starts with a version and the size, modification time and a
+ * checksum of the first and last SAMPLE bytes of the log; it is ignored as
+ * soon as any of them doesn't match.  Strings and methods are written once
+ * to a table and referred to by index.  Numbers are zigzag varints, and
+ * stamps are stored in milliseconds as deltas: event starts relative to
+ * the previous event, everything inside a compilation relative to its
+ * start.  The log's stamps have millisecond resolution, so the doubles
+ * come back unchanged.
+ */
+public class Snapshot {
+
+    static final int MAGIC = 0x4a495453; // JITS
+    static final int VERSION = 5;
+    static final String SUFFIX = ".snapshot";
+    static final int SAMPLE = 1 << 16;
+    static final long WINDOW = 1L << 30;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int COMPILATION = 1;
+    private static final int NMETHOD = 2;
+    private static final int UNCOMMON_TRAP = 3;
+    private static final int MAKE_NOT_ENTRANT = 4;
+
+    public static File fileFor(String logFile) {
+        return new File(logFile + SUFFIX);
+    }
+
+    /**
+     * Returns the events of the log's snapshot, or null if there is no
+     * snapshot or it is out of date.
+     */
+    public static ArrayList<LogEvent> load(String logFile) {
+        File file = fileFor(logFile);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            Input in = new Input(raf.getChannel());
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            long[] stamp = logStamp(new File(logFile));
+            for (long value : stamp) {
+                if (in.readLong() != value) {
+                    return null;
+                }
+            }
+            return new Reader(in, new SymbolTable()).read();
+        } catch (Exception e) {
+            // a damaged or foreign snapshot is as good as none
+            return null;
+        }
+    }
+
+    /**
+     * Writes the events next to the log.  The snapshot is written to a
+     * temporary file first, so readers never see a partial one.
+     */
+    public static void save(String logFile, List<LogEvent> events) throws IOException {
+        File file = fileFor(logFile);
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for (long value : logStamp(new File(logFile))) {
+                out.writeLong(value);
+            }
+            new Writer(out).write(events);
+        }
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+                throw new IOException("can't write " + file);
+            }
+        }
+    }
+
+    /**
+     * Size, modification time and a CRC of the head and tail of the log.
+     */
+    static long[] logStamp(File log) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(log, "r")) {
+            long size = raf.length();
+            CRC32 crc = new CRC32();
+            byte[] buffer = new byte[(int) Math.min(SAMPLE, size)];
+            raf.readFully(buffer);
+            crc.update(buffer);
+            if (size > SAMPLE) {
+                buffer = new byte[(int) Math.min(SAMPLE, size - SAMPLE)];
+                raf.seek(size - buffer.length);
+                raf.readFully(buffer);
+                crc.update(buffer);
+            }
+            return new long[] { size, log.lastModified(), crc.getValue() };
+        }
+    }
+
+    static long millis(double stamp) {
+        return Math.round(stamp * 1000);
+    }
+
+    static double seconds(long millis) {
+        return millis / 1000.0;
+    }
+
+    static class Writer {
+        private final DataOutputStream out;
+        private final HashMap<String, Integer> strings = new HashMap<String, Integer>();
+        private final ArrayList<String> stringList = new ArrayList<String>();
+        private final IdentityHashMap<Method, Integer> methods = new IdentityHashMap<Method, Integer>();
+        private final ArrayList<Method> methodList = new ArrayList<Method>();
+        private final IdentityHashMap<LogEvent, Integer> indexes = new IdentityHashMap<LogEvent, Integer>();
+
+        Writer(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void write(List<LogEvent> events) throws IOException {
+            // collect the tables first, they are read before the events
+            for (int i = 0; i < events.size(); i++) {
+                LogEvent e = events.get(i);
+                indexes.put(e, i);
+                collect(e);
+            }
+
+            writeVarint(stringList.size());
+            for (String s : stringList) {
+                byte[] bytes = s.getBytes(UTF_8);
+                writeVarint(bytes.length);
+                out.write(bytes);
+            }
+            writeVarint(methodList.size());
+            for (Method m : methodList) {
+                writeVarint(string(m.getHolder()));
+                writeVarint(string(m.getName()));
+                writeVarint(string(m.getArguments()));
+                writeVarint(string(m.getReturnType()));
+                writeVarint(m.getBytes());
+                writeVarint(m.getFlags());
+                out.writeBoolean(m.isPartial());
+            }
+
+            writeVarint(events.size());
+            long previous = 0;
+            for (LogEvent e : events) {
+                long start = millis(e.getStart());
+                if (e instanceof Compilation) {
+                    out.writeByte(COMPILATION);
+                    writeVarint(start - previous);
+                    writeCompilation((Compilation) e, start);
+                } else if (e instanceof NMethod) {
+                    NMethod nm = (NMethod) e;
+                    out.writeByte(NMETHOD);
+                    writeVarint(start - previous);
+                    writeVarint(string(nm.getId()));
+                    writeVarint(nm.getAddress());
+                    writeVarint(nm.getSize());
+                    writeVarint(string(nm.getCompiler()));
+                    writeVarint(index(nm.getCompilation()));
+                } else if (e instanceof UncommonTrapEvent) {
+                    UncommonTrapEvent trap = (UncommonTrapEvent) e;
+                    out.writeByte(UNCOMMON_TRAP);
+                    writeVarint(start - previous);
+                    writeVarint(string(trap.getId()));
+                    writeVarint(string(trap.getReason()));
+                    writeVarint(string(trap.getAction()));
+                    writeVarint(trap.getCount());
+                    writeVarint(trap.getFrameCount());
+                    for (int i = 0; i < trap.getFrameCount(); i++) {
+                        writeVarint(method(trap.getFrameMethod(i)));
+                        writeVarint(trap.getFrameBci(i));
+                    }
+                    writeVarint(index(trap.getCompilation()));
+                } else if (e instanceof MakeNotEntrantEvent) {
+                    MakeNotEntrantEvent mne = (MakeNotEntrantEvent) e;
+                    out.writeByte(MAKE_NOT_ENTRANT);
+                    writeVarint(start - previous);
+                    writeVarint(string(mne.getId()));
+                    out.writeBoolean(mne.isZombie());
+                    writeVarint(index(mne.getNMethod()));
+                } else {
+                    throw new InternalError("unknown event " + e);
+                }
+                previous = start;
+            }
+        }
+
+        private void writeCompilation(Compilation c, long start) throws IOException {
+            writeVarint(c.getId());
+            out.writeBoolean(c.isOsr());
+            writeVarint(c.getOsr_bci());
+            writeVarint(c.getIcount());
+            writeVarint(c.getBcount());
+            writeVarint(string(c.getSpecial()));
+            writeVarint(millis(c.getEnd()) - start);
+            writeVarint(c.getAttempts());
+            writeVarint(method(c.getMethod()));
+            writeVarint(string(c.getFailureReason()));
+
+            writeVarint(c.getPhases().size());
+            for (Phase p : c.getPhases()) {
+                writeVarint(string(p.getName()));
+                writeVarint(millis(p.getStart()) - start);
+                writeVarint(millis(p.getEnd()) - start);
+                writeVarint(p.getStartNodes());
+                writeVarint(p.getEndNodes());
+            }
+
+            InlineTree tree = c.getInlineTree();
+            int size = tree.size();
+            writeVarint(size);
+            for (int node = 0; node < size; node++) {
+                writeVarint(tree.getParent(node));
+                writeVarint(tree.getFirstChild(node));
+                writeVarint(tree.getNextSibling(node));
+                writeVarint(tree.getBci(node));
+                writeVarint(string(tree.getReason(node)));
+                out.writeBoolean(tree.isIntrinsic(node));
+                writeVarint(method(tree.getMethod(node)));
+                writeVarint(tree.getCount(node));
+                writeVarint(tree.getEndNodes(node));
+                // relative to the start, 0 is a node without parse_done
+                int stamp = tree.nodes[node * InlineTree.STRIDE + InlineTree.STAMP];
+                writeVarint(stamp == InlineTree.NO_STAMP ? 0 : tree.stampBase + stamp - start + 1);
+            }
+            writeVarint(tree.receiverNames.length);
+            for (int i = 0; i < tree.receiverNames.length; i++) {
+                writeVarint(tree.receivers[i * 2]);
+                writeVarint(tree.receivers[i * 2 + 1]);
+                writeVarint(string(tree.receiverNames[i]));
+            }
+            writeVarint(tree.iicounts.length / 2);
+            for (int i = 0; i < tree.iicounts.length; i += 2) {
+                writeVarint(method(tree.getSymbols().getMethod(tree.iicounts[i])));
+                writeVarint(tree.iicounts[i + 1]);
+            }
+        }
+
+        private void collect(LogEvent e) {
+            if (e instanceof Compilation) {
+                Compilation c = (Compilation) e;
+                collect(c.getSpecial());
+                collect(c.getFailureReason());
+                collect(c.getMethod());
+                for (Phase p : c.getPhases()) {
+                    collect(p.getName());
+                }
+                InlineTree tree = c.getInlineTree();
+                for (int node = 0; node < tree.size(); node++) {
+                    collect(tree.getMethod(node));
+                    Reason reason = tree.getReason(node);
+                    collect(reason != null ? reason.getText() : null);
+                }
+                for (String name : tree.receiverNames) {
+                    collect(name);
+                }
+                for (int i = 0; i < tree.iicounts.length; i += 2) {
+                    collect(tree.getSymbols().getMethod(tree.iicounts[i]));
+                }
+            } else if (e instanceof NMethod) {
+                collect(((NMethod) e).getId());
+                collect(((NMethod) e).getCompiler());
+            } else if (e instanceof UncommonTrapEvent) {
+                UncommonTrapEvent trap = (UncommonTrapEvent) e;
+                collect(trap.getId());
+                collect(trap.getReason() != null ? trap.getReason().getText() : null);
+                collect(trap.getAction() != null ? trap.getAction().getText() : null);
+                for (int i = 0; i < trap.getFrameCount(); i++) {
+                    collect(trap.getFrameMethod(i));
+                }
+            } else if (e instanceof MakeNotEntrantEvent) {
+                collect(((MakeNotEntrantEvent) e).getId());
+            }
+        }
+
+        private void collect(String s) {
+            if (s != null && !strings.containsKey(s)) {
+                strings.put(s, stringList.size());
+                stringList.add(s);
+            }
+        }
+
+        private void collect(Method m) {
+            if (m != null && !methods.containsKey(m)) {
+                collect(m.getHolder());
+                collect(m.getName());
+                collect(m.getArguments());
+                collect(m.getReturnType());
+                methods.put(m, methodList.size());
+                methodList.add(m);
+            }
+        }
+
+        /**
+         * Table indexes are written plus one, so zero stands for null.
+         */
+        private int string(String s) {
+            return s == null ? 0 : strings.get(s) + 1;
+        }
+
+        private int string(Reason r) {
+            return r == null ? 0 : string(r.getText());
+        }
+
+        private int method(Method m) {
+            return m == null ? 0 : methods.get(m) + 1;
+        }
+
+        private int index(LogEvent e) {
+            return e == null ? 0 : indexes.get(e) + 1;
+        }
+
+        private void writeVarint(long value) throws IOException {
+            long v = (value << 1) ^ (value >> 63);
+            while ((v & ~0x7fL) != 0) {
+                out.writeByte((int) ((v & 0x7f) | 0x80));
+                v >>>= 7;
+            }
+            out.writeByte((int) v);
+        }
+    }
+
+    static class Reader {
+        private final Input in;
+        private final SymbolTable symbols;
+        private String[] strings;
+        private Method[] methods;
+
+        Reader(Input in, SymbolTable symbols) {
+            this.in = in;
+            this.symbols = symbols;
+        }
+
+        ArrayList<LogEvent> read() throws IOException {
+            strings = new String[length(1) + 1];
+            for (int i = 1; i < strings.length; i++) {
+                strings[i] = symbols.intern(in.readString(length(1)));
+            }
+            methods = new Method[length(7) + 1];
+            for (int i = 1; i < methods.length; i++) {
+                Method m = new Method();
+                m.setHolder(string());
+                m.setName(string());
+                m.setArguments(string());
+                m.setReturnType(string());
+                m.setBytes(integer());
+                m.setFlags(integer());
+                m.setPartial(in.readByte() != 0);
+                methods[i] = symbols.intern(m);
+            }
+
+            int count = length(2);
+            ArrayList<LogEvent> events = new ArrayList<LogEvent>(count);
+            // references to other events are resolved once all are read
+            int[] links = new int[count];
+            long start = 0;
+            for (int i = 0; i < count; i++) {
+                int kind = in.readByte();
+                start += in.readVarint();
+                double stamp = seconds(start);
+                if (kind == COMPILATION) {
+                    events.add(readCompilation(stamp, start));
+                } else if (kind == NMETHOD) {
+                    String id = string();
+                    long address = in.readVarint();
+                    long size = in.readVarint();
+                    NMethod nm = new NMethod(stamp, id, address, size);
+                    nm.setCompiler(string());
+                    events.add(nm);
+                    links[i] = integer();
+                } else if (kind == UNCOMMON_TRAP) {
+                    UncommonTrapEvent trap = new UncommonTrapEvent(stamp, string(), Reason.valueOf(string()),
+                                                                   Reason.valueOf(string()), integer());
+                    int frames = length(2);
+                    for (int f = 0; f < frames; f++) {
+                        trap.addFrame(method(), integer());
+                    }
+                    events.add(trap);
+                    links[i] = integer();
+                } else if (kind == MAKE_NOT_ENTRANT) {
+                    String id = string();
+                    boolean zombie = in.readByte() != 0;
+                    links[i] = integer();
+                    NMethod nm = (NMethod) events.get(links[i] - 1);
+                    events.add(new MakeNotEntrantEvent(stamp, id, zombie, nm));
+                } else {
+                    throw new IOException("bad event kind " + kind);
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                LogEvent e = events.get(i);
+                if (links[i] == 0) {
+                    continue;
+                }
+                if (e instanceof NMethod) {
+                    LogParser.associate((Compilation) events.get(links[i] - 1), (NMethod) e);
+                } else if (e instanceof UncommonTrapEvent) {
+                    ((UncommonTrapEvent) e).setCompilation((Compilation) events.get(links[i] - 1));
+                }
+            }
+            return events;
+        }
+
+        private Compilation readCompilation(double stamp, long start) throws IOException {
+            Compilation c = new Compilation(integer());
+            c.setStart(stamp);
+            c.setOsr(in.readByte() != 0);
+            c.setOsr_bci(integer());
+            c.setICount(integer());
+            c.setBCount(integer());
+            c.setSpecial(string());
+            c.setEnd(seconds(start + in.readVarint()));
+            c.setAttempts(integer());
+            c.setMethod(method());
+            c.setFailureReason(string());
+
+            int phases = length(5);
+            for (int i = 0; i < phases; i++) {
+                String name = string();
+                double phaseStart = seconds(start + in.readVarint());
+                double phaseEnd = seconds(start + in.readVarint());
+                Phase p = new Phase(name, phaseStart, integer());
+                p.setEnd(phaseEnd);
+                p.setEndNodes(integer());
+                c.getPhases().add(p);
+            }
+
+            int size = length(10);
+            int[] nodes = new int[size * InlineTree.STRIDE];
+            for (int node = 0; node < size; node++) {
+                int row = node * InlineTree.STRIDE;
+                nodes[row + InlineTree.PARENT] = integer();
+                nodes[row + InlineTree.FIRST_CHILD] = integer();
+                nodes[row + InlineTree.NEXT_SIBLING] = integer();
+                int bciReason = integer() & InlineTree.BCI_MASK;
+                bciReason |= InlineTree.reasonBits(Reason.valueOf(string()));
+                if (in.readByte() != 0) {
+                    bciReason |= InlineTree.INTRINSIC;
+                }
+                nodes[row + InlineTree.BCI_REASON] = bciReason;
+                Method m = method();
+                nodes[row + InlineTree.METHOD] = m != null ? m.getId() : -1;
+                nodes[row + InlineTree.COUNT] = integer();
+                nodes[row + InlineTree.END_NODES] = integer();
+                long parseDone = in.readVarint();
+                nodes[row + InlineTree.STAMP] = parseDone == 0 ? InlineTree.NO_STAMP : (int) (parseDone - 1);
+            }
+            int receiverCount = length(3);
+            int[] receivers = new int[receiverCount * 2];
+            String[] receiverNames = new String[receiverCount];
+            for (int i = 0; i < receiverCount; i++) {
+                receivers[i * 2] = integer();
+                receivers[i * 2 + 1] = integer();
+                receiverNames[i] = string();
+            }
+            // pairs by method id, which are assigned anew when loading
+            int iicountCount = length(2);
+            long[] pairs = new long[iicountCount];
+            for (int i = 0; i < iicountCount; i++) {
+                pairs[i] = ((long) method().getId() << 32) | (integer() & 0xffffffffL);
+            }
+            Arrays.sort(pairs);
+            int[] iicounts = new int[iicountCount * 2];
+            for (int i = 0; i < iicountCount; i++) {
+                iicounts[i * 2] = (int) (pairs[i] >>> 32);
+                iicounts[i * 2 + 1] = (int) pairs[i];
+            }
+            c.setInlineTree(new InlineTree(symbols, nodes, receivers, receiverNames, iicounts, start));
+            return c;
+        }
+
+        private int integer() throws IOException {
+            return (int) in.readVarint();
+        }
+
+        /**
+         * Reads the number of the items that follow, which take at least
+         * minBytes each, so a damaged length is caught before it is
+         * allocated instead of running out of memory.
+         */
+        private int length(int minBytes) throws IOException {
+            long n = in.readVarint();
+            if (n < 0 || n > in.remaining() / minBytes) {
+                throw new IOException("bad length " + n);
+            }
+            return (int) n;
+        }
+
+        private String string() throws IOException {
+            return strings[integer()];
+        }
+
+        private Method method() throws IOException {
+            return methods[integer()];
+        }
+    }
+
+    /**
+     * Reads the memory mapped snapshot, one window at a time.
+     */
+    static class Input {
+        private final FileChannel channel;
+        private final long size;
+        private MappedByteBuffer buf;
+        private long base;
+
+        Input(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            map(0);
+        }
+
+        private void map(long offset) throws IOException {
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(WINDOW, size - offset));
+            base = offset;
+        }
+
+        private void ensure(int n) throws IOException {
+            if (buf.remaining() < n) {
+                long pos = base + buf.position();
+                if (size - pos < n) {
+                    throw new IOException("truncated snapshot");
+                }
+                map(pos);
+            }
+        }
+
+        long remaining() {
+            return size - base - buf.position();
+        }
+
+        int readByte() throws IOException {
+            ensure(1);
+            return buf.get() & 0xff;
+        }
+
+        int readInt() throws IOException {
+            ensure(4);
+            return buf.getInt();
+        }
+
+        long readLong() throws IOException {
+            ensure(8);
+            return buf.getLong();
+        }
+
+        long readVarint() throws IOException {
+            long v = 0;
+            int shift = 0;
+            while (true) {
+                int b = readByte();
+                v |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    break;
+                }
+                shift += 7;
+            }
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        String readString(int length) throws IOException {
+            ensure(length);
+            byte[] bytes = new byte[length];
+            buf.get(bytes);
+            return new String(bytes, UTF_8);
+        }
+    }
+}
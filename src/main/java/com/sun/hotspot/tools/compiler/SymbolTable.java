@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonical instances of the names and methods found in a log.
+ *
+ * The ids in a log are only valid within one task, so without this every
+ * compilation which inlines String.equals would get its own Method.  Every
+ * parse of a file has its own table, shared by the threads of a parallel
+ * parse, so equal methods of different tasks are one instance and can be
+ * compared by identity.  Another file may come from another build of the
+ * same classes, so its methods are its own, only the names are interned
+ * across all tables.  Only what identifies a method and describes its
+ * bytecode (bytes and flags) is kept on the Method, what a task saw of it,
+ * like the invocation count, stays with the task's {@link InlineTree}.
+ *
+ * Every method also gets a dense id, which is what the columnar
+ * {@link InlineTree} stores instead of a reference.
+ */
+public class SymbolTable {
+
+    private static final ConcurrentHashMap<String, String> strings = new ConcurrentHashMap<String, String>();
+
+    private final ConcurrentHashMap<Key, Method> methods = new ConcurrentHashMap<Key, Method>();
+    private volatile Method[] methodsById = new Method[1024];
+    private int methodCount;
+
+    public String intern(String s) {
+        if (s == null) {
+            return null;
+        }
+        String result = strings.putIfAbsent(s, s);
+        return result != null ? result : s;
+    }
+
+    /**
+     * Returns the canonical method for holder, name and signature, using
+     * the given method if this is the first time it is seen.
+     */
+    public Method intern(Method m) {
+        Key key = new Key(m.getHolder(), m.getName(), m.getArguments(), m.getReturnType());
+        Method result = methods.get(key);
+        if (result != null && !(result.isPartial() && !m.isPartial())) {
+            return result;
+        }
+        synchronized (this) {
+            result = methods.get(key);
+            if (result != null && result.isPartial() && !m.isPartial()) {
+                // a <method> element describes what a trap frame couldn't,
+                // clearing the volatile partial flag last publishes the rest
+                // to the threads taking the fast path above
+                result.setBytes(m.getBytes());
+                result.setFlags(m.getFlags());
+                result.setPartial(false);
+            } else if (result == null) {
+                m.setHolder(intern(m.getHolder()));
+                m.setName(intern(m.getName()));
+                m.setArguments(intern(m.getArguments()));
+                m.setReturnType(intern(m.getReturnType()));
+                Method[] byId = methodsById;
+                if (methodCount == byId.length) {
+                    Method[] newById = new Method[byId.length * 2];
+                    System.arraycopy(byId, 0, newById, 0, byId.length);
+                    byId = newById;
+                }
+                m.setId(methodCount);
+                byId[methodCount++] = m;
+                methodsById = byId;
+                // the id is assigned before other threads can find the method
+                methods.put(key, m);
+                result = m;
+            }
+            return result;
+        }
+    }
+
+    public Method getMethod(int id) {
+        return id < 0 ? null : methodsById[id];
+    }
+
+    public int getMethodCount() {
+        return methods.size();
+    }
+
+    private static final class Key {
+        private final String holder;
+        private final String name;
+        private final String arguments;
+        private final String returnType;
+        private final int hash;
+
+        Key(String holder, String name, String arguments, String returnType) {
+            this.holder = holder;
+            this.name = name;
+            this.arguments = arguments;
+            this.returnType = returnType;
+            int h = holder.hashCode();
+            h = h * 31 + name.hashCode();
+            h = h * 31 + (arguments != null ? arguments.hashCode() : 0);
+            h = h * 31 + (returnType != null ? returnType.hashCode() : 0);
+            hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash && holder.equals(other.holder) && name.equals(other.name) &&
+                   equal(arguments, other.arguments) && equal(returnType, other.returnType);
+        }
+
+        private static boolean equal(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Groups uncommon traps by where and why they happened, the innermost frame
+ * of their JVM state plus reason and action, and by time window.  Windows
+ * with at least a given number of traps are deoptimization storms,
+ * adjacent ones are reported as one.  A site trapping in several
+ * compilations of its code is a recompile loop.
+ */
+public class TrapAnalysis {
+
+    /**
+     * The traps of one (method, bci, reason, action).
+     */
+    public static class Site {
+        private final Method method;
+        private final int bci;
+        private final Reason reason;
+        private final Reason action;
+        private int traps;
+        private double first = Double.POSITIVE_INFINITY;
+        private double last = Double.NEGATIVE_INFINITY;
+        private final Set<String> compilations = new HashSet<String>();
+
+        Site(Method method, int bci, Reason reason, Reason action) {
+            this.method = method;
+            this.bci = bci;
+            this.reason = reason;
+            this.action = action;
+        }
+
+        void add(UncommonTrapEvent trap) {
+            traps++;
+            first = Math.min(first, trap.getStart());
+            last = Math.max(last, trap.getStart());
+            compilations.add(trap.getId());
+        }
+
+        public Method getMethod() {
+            return method;
+        }
+
+        public int getBci() {
+            return bci;
+        }
+
+        public Reason getReason() {
+            return reason;
+        }
+
+        public Reason getAction() {
+            return action;
+        }
+
+        public int getTraps() {
+            return traps;
+        }
+
+        public double getFirst() {
+            return first;
+        }
+
+        public double getLast() {
+            return last;
+        }
+
+        /**
+         * The number of different compilations whose code trapped here.
+         */
+        public int getCompilations() {
+            return compilations.size();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Site)) {
+                return false;
+            }
+            Site other = (Site) o;
+            return method == other.method && bci == other.bci && reason == other.reason && action == other.action;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = method != null ? method.getId() : -1;
+            h = h * 31 + bci;
+            h = h * 31 + (reason != null ? reason.getCode() : -1);
+            return h * 31 + (action != null ? action.getCode() : -1);
+        }
+
+        @Override
+        public String toString() {
+            return reason + " " + action + " @" + bci + " " + (method != null ? method.toString() : "(unknown)");
+        }
+    }
+
+    /**
+     * A run of adjacent windows with at least the storm threshold of traps.
+     */
+    public static class Storm {
+        private final double start;
+        private double end;
+        private int traps;
+        private final Map<Site, Integer> sites = new HashMap<Site, Integer>();
+
+        Storm(double start) {
+            this.start = start;
+        }
+
+        public double getStart() {
+            return start;
+        }
+
+        public double getEnd() {
+            return end;
+        }
+
+        public int getTraps() {
+            return traps;
+        }
+
+        /**
+         * The sites that trapped during the storm, the busiest first.
+         */
+        public List<Map.Entry<Site, Integer>> getSites() {
+            List<Map.Entry<Site, Integer>> result = new ArrayList<Map.Entry<Site, Integer>>(sites.entrySet());
+            Collections.sort(result, new Comparator<Map.Entry<Site, Integer>>() {
+                public int compare(Map.Entry<Site, Integer> a, Map.Entry<Site, Integer> b) {
+                    return b.getValue() - a.getValue();
+                }
+            });
+            return result;
+        }
+    }
+
+    private final double window;
+    private final int stormTraps;
+    private final List<Site> sites;
+    private final List<Storm> storms = new ArrayList<Storm>();
+    private int traps;
+
+    /**
+     * Analyzes the traps among the events, which must be sorted by start.
+     */
+    public TrapAnalysis(List<LogEvent> events, double window, int stormTraps) {
+        this.window = window;
+        this.stormTraps = stormTraps;
+        Map<Site, Site> siteMap = new HashMap<Site, Site>();
+        List<UncommonTrapEvent> windowTraps = new ArrayList<UncommonTrapEvent>();
+        List<Site> windowSites = new ArrayList<Site>();
+        long currentWindow = Long.MIN_VALUE;
+        Storm storm = null;
+
+        for (LogEvent e : events) {
+            if (!(e instanceof UncommonTrapEvent)) {
+                continue;
+            }
+            UncommonTrapEvent trap = (UncommonTrapEvent) e;
+            traps++;
+            Site key = site(trap);
+            Site site = siteMap.get(key);
+            if (site == null) {
+                site = key;
+                siteMap.put(key, site);
+            }
+            site.add(trap);
+
+            long w = (long) Math.floor(trap.getStart() / window);
+            if (w != currentWindow) {
+                storm = closeWindow(currentWindow, w, windowTraps, windowSites, storm);
+                currentWindow = w;
+            }
+            windowTraps.add(trap);
+            windowSites.add(site);
+        }
+        closeWindow(currentWindow, Long.MAX_VALUE, windowTraps, windowSites, storm);
+
+        sites = new ArrayList<Site>(siteMap.values());
+        Collections.sort(sites, new Comparator<Site>() {
+            public int compare(Site a, Site b) {
+                if (a.traps != b.traps) {
+                    return b.traps - a.traps;
+                }
+                return Double.compare(a.first, b.first);
+            }
+        });
+    }
+
+    private static Site site(UncommonTrapEvent trap) {
+        if (trap.getFrameCount() > 0) {
+            return new Site(trap.getFrameMethod(0), trap.getFrameBci(0), trap.getReason(), trap.getAction());
+        }
+        Compilation c = trap.getCompilation();
+        return new Site(c != null ? c.getMethod() : null, -1, trap.getReason(), trap.getAction());
+    }
+
+    /**
+     * Adds a full window to the current storm or starts a new one, and
+     * returns the storm still open for the next window.
+     */
+    private Storm closeWindow(long w, long next, List<UncommonTrapEvent> windowTraps, List<Site> windowSites, Storm storm) {
+        if (windowTraps.size() >= stormTraps) {
+            if (storm == null) {
+                storm = new Storm(w * window);
+                storms.add(storm);
+            }
+            storm.end = (w + 1) * window;
+            storm.traps += windowTraps.size();
+            for (Site site : windowSites) {
+                Integer n = storm.sites.get(site);
+                storm.sites.put(site, n == null ? 1 : n + 1);
+            }
+        } else {
+            storm = null;
+        }
+        if (next != w + 1) {
+            storm = null;
+        }
+        windowTraps.clear();
+        windowSites.clear();
+        return storm;
+    }
+
+    public int getTraps() {
+        return traps;
+    }
+
+    /**
+     * All sites, the ones with the most traps first.
+     */
+    public List<Site> getSites() {
+        return Collections.unmodifiableList(sites);
+    }
+
+    public List<Storm> getStorms() {
+        return Collections.unmodifiableList(storms);
+    }
+
+    /**
+     * Sites that trapped in at least the given number of compilations, the
+     * most recompiled first.
+     */
+    public List<Site> getRecompileLoops(int compilations) {
+        List<Site> result = new ArrayList<Site>();
+        for (Site site : sites) {
+            if (site.getCompilations() >= compilations) {
+                result.add(site);
+            }
+        }
+        Collections.sort(result, new Comparator<Site>() {
+            public int compare(Site a, Site b) {
+                return b.getCompilations() - a.getCompilations();
+            }
+        });
+        return result;
+    }
+
+    public void print(PrintStream out, int limit) {
+        out.printf("Uncommon traps: %d at %d sites\n", traps, sites.size());
+        out.printf("%8s %8s %10s %10s  %s\n", "traps", "compiles", "first", "last", "site");
+        for (Site site : sites.subList(0, Math.min(limit, sites.size()))) {
+            out.printf("%8d %8d %10.3f %10.3f  %s\n", site.getTraps(), site.getCompilations(),
+                    site.getFirst(), site.getLast(), site);
+        }
+        out.printf("Deoptimization storms (at least %d traps per %.3fs):\n", stormTraps, window);
+        for (Storm storm : storms) {
+            out.printf("%10.3f - %10.3f %8d traps\n", storm.getStart(), storm.getEnd(), storm.getTraps());
+            List<Map.Entry<Site, Integer>> stormSites = storm.getSites();
+            for (Map.Entry<Site, Integer> e : stormSites.subList(0, Math.min(limit, stormSites.size()))) {
+                out.printf("%8d  %s\n", e.getValue(), e.getKey());
+            }
+        }
+        out.println("Recompile loops (trapping in 3 or more compilations):");
+        List<Site> loops = getRecompileLoops(3);
+        for (Site site : loops.subList(0, Math.min(limit, loops.size()))) {
+            out.printf("%8d compilations %8d traps  %s\n", site.getCompilations(), site.getTraps(), site);
+        }
+    }
+}
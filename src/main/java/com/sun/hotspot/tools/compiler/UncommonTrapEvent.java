@@ -25,15 +25,19 @@
 package com.sun.hotspot.tools.compiler;
 
 import java.io.PrintStream;
+import java.util.Arrays;
 
-class UncommonTrapEvent extends BasicLogEvent {
+public class UncommonTrapEvent extends BasicLogEvent {
 
-    private final String reason;
-    private final String action;
+    private final Reason reason;
+    private final Reason action;
     private int count;
-    private String jvms = "";
+    // the JVM state, innermost frame first
+    private Method[] frameMethods = new Method[2];
+    private int[] frameBcis = new int[2];
+    private int frameCount;
 
-    UncommonTrapEvent(double s, String i, String r, String a, int c) {
+    UncommonTrapEvent(double s, String i, Reason r, Reason a, int c) {
         super(s, i);
         reason = r;
         action = a;
@@ -41,8 +45,29 @@ class UncommonTrapEvent extends BasicLogEvent {
     }
 
 
-    public void addJVMS(String method, int bci) {
-        setJvms(getJvms() + "  @" + bci + " " + method + "\n");
+    void addFrame(Method method, int bci) {
+        if (frameCount == frameBcis.length) {
+            frameMethods = Arrays.copyOf(frameMethods, frameCount * 2);
+            frameBcis = Arrays.copyOf(frameBcis, frameCount * 2);
+        }
+        frameMethods[frameCount] = method;
+        frameBcis[frameCount++] = bci;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    public Method getFrameMethod(int frame) {
+        return frameMethods[frame];
+    }
+
+    public int getFrameMethodId(int frame) {
+        return frameMethods[frame].getId();
+    }
+
+    public int getFrameBci(int frame) {
+        return frameBcis[frame];
     }
 
     public void updateCount(UncommonTrapEvent trap) {
@@ -54,11 +79,11 @@ class UncommonTrapEvent extends BasicLogEvent {
         stream.print(getJvms());
     }
 
-    public String getReason() {
+    public Reason getReason() {
         return reason;
     }
 
-    public String getAction() {
+    public Reason getAction() {
         return action;
     }
 
@@ -70,12 +95,16 @@ class UncommonTrapEvent extends BasicLogEvent {
         this.count = count;
     }
 
+    /**
+     * The JVM state as the log shows it, one frame per line.
+     */
     public String getJvms() {
-        return jvms;
-    }
-
-    public void setJvms(String jvms) {
-        this.jvms = jvms;
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < frameCount; i++) {
+            sb.append("  @").append(frameBcis[i]).append(' ');
+            sb.append(Descriptors.format(frameMethods[i])).append('\n');
+        }
+        return sb.toString();
     }
 
     public void setCompilation(Compilation compilation) {
@@ -0,0 +1,202 @@
+package me.nandork.jittree;
+
+import com.sun.hotspot.tools.compiler.CallSite;
+import com.sun.hotspot.tools.compiler.Compilation;
+import com.sun.hotspot.tools.compiler.InlineTreeDiff;
+import com.sun.hotspot.tools.compiler.LogEvent;
+import com.sun.hotspot.tools.compiler.LogEventListener;
+import com.sun.hotspot.tools.compiler.LogParser;
+import com.sun.hotspot.tools.compiler.Snapshot;
+
+import javax.swing.*;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreeNode;
+import javax.swing.tree.TreePath;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Shows the compilations whose inlining differs between two logs.  The
+ * trees of the selected one are shown side by side, with the changed call
+ * sites expanded and marked.
+ */
+class DiffFrame extends JFrame {
+
+    private final String before;
+    private final String after;
+    private final DefaultListModel<InlineTreeDiff.Pair> pairs = new DefaultListModel<>();
+    private final JList<InlineTreeDiff.Pair> pairList = new JList<>(pairs);
+    private final JTree beforeTree = new JTree(new Object[0]);
+    private final JTree afterTree = new JTree(new Object[0]);
+    private final DiffCellRenderer beforeRenderer = new DiffCellRenderer();
+    private final DiffCellRenderer afterRenderer = new DiffCellRenderer();
+    private final JLabel status = new JLabel("Comparing...");
+
+    public DiffFrame(String before, String after) {
+        super(before + " / " + after);
+        this.before = before;
+        this.after = after;
+        beforeTree.setCellRenderer(beforeRenderer);
+        afterTree.setCellRenderer(afterRenderer);
+        pairList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        pairList.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                InlineTreeDiff.Pair pair = (InlineTreeDiff.Pair) value;
+                String text = pair.getKey() + " (" + pair.getChanges().size() + ")";
+                return super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+            }
+        });
+        pairList.addListSelectionListener(new ListSelectionListener() {
+            @Override
+            public void valueChanged(ListSelectionEvent e) {
+                if (!e.getValueIsAdjusting() && pairList.getSelectedValue() != null) {
+                    show(pairList.getSelectedValue());
+                }
+            }
+        });
+
+        JSplitPane trees = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT,
+                new JScrollPane(beforeTree), new JScrollPane(afterTree));
+        trees.setResizeWeight(0.5);
+        JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT, new JScrollPane(pairList), trees);
+        split.setResizeWeight(0.25);
+        setLayout(new BorderLayout());
+        add(split, BorderLayout.CENTER);
+        add(status, BorderLayout.SOUTH);
+        setSize(1000, 700);
+        setLocationRelativeTo(null);
+
+        new Comparer().execute();
+    }
+
+    private void show(InlineTreeDiff.Pair pair) {
+        Map<CallSite, InlineTreeDiff.Kind> beforeChanges = new HashMap<>();
+        Map<CallSite, InlineTreeDiff.Kind> afterChanges = new HashMap<>();
+        for (InlineTreeDiff.Change change : pair.getChanges()) {
+            if (change.getBefore() != null) {
+                beforeChanges.put(change.getBefore(), change.getKind());
+            }
+            if (change.getAfter() != null) {
+                afterChanges.put(change.getAfter(), change.getKind());
+            }
+        }
+        show(beforeTree, beforeRenderer, before, pair.getBefore(), beforeChanges);
+        show(afterTree, afterRenderer, after, pair.getAfter(), afterChanges);
+    }
+
+    private void show(JTree tree, DiffCellRenderer renderer, String fileName, Compilation c,
+                      Map<CallSite, InlineTreeDiff.Kind> changes) {
+        JITNode root = new JITNode(fileName, Collections.singletonList(c.getCall()));
+        renderer.changes = changes;
+        tree.setModel(new DefaultTreeModel(root));
+        for (CallSite site : changes.keySet()) {
+            TreePath path = pathTo(root, site);
+            if (path != null) {
+                tree.makeVisible(path);
+            }
+        }
+    }
+
+    /**
+     * Finds the node of the call site, the nodes on the way are created.
+     */
+    private static TreePath pathTo(JITNode root, CallSite site) {
+        List<CallSite> callers = new ArrayList<>();
+        for (CallSite cs = site; cs != null; cs = cs.getParent()) {
+            callers.add(0, cs);
+        }
+        List<TreeNode> path = new ArrayList<>();
+        path.add(root);
+        TreeNode node = root;
+        for (CallSite cs : callers) {
+            TreeNode next = null;
+            for (int i = 0; i < node.getChildCount() && next == null; i++) {
+                JITNode child = (JITNode) node.getChildAt(i);
+                if (cs.equals(child.callSite())) {
+                    next = child;
+                }
+            }
+            if (next == null) {
+                return null;
+            }
+            path.add(next);
+            node = next;
+        }
+        return new TreePath(path.toArray());
+    }
+
+    private static class DiffCellRenderer extends JITTreeCellRenderer {
+        private Map<CallSite, InlineTreeDiff.Kind> changes = Collections.emptyMap();
+
+        @Override
+        public Component getTreeCellRendererComponent(JTree tree, Object value, boolean sel, boolean expanded,
+                                                      boolean leaf, int row, boolean hasFocus) {
+            Component c = super.getTreeCellRendererComponent(tree, value, sel, expanded, leaf, row, hasFocus);
+            CallSite callSite = ((JITNode) value).callSite();
+            InlineTreeDiff.Kind kind = callSite != null ? changes.get(callSite) : null;
+            if (kind != null) {
+                setText(getText() + " [" + kind.name().toLowerCase() + "]");
+                setFont(getFont().deriveFont(Font.BOLD));
+            } else {
+                setFont(getFont().deriveFont(Font.PLAIN));
+            }
+            return c;
+        }
+    }
+
+    /**
+     * Parses both logs and compares them in the background.
+     */
+    private class Comparer extends SwingWorker<InlineTreeDiff, Void> {
+
+        @Override
+        protected InlineTreeDiff doInBackground() throws Exception {
+            InlineTreeDiff diff = new InlineTreeDiff();
+            load(before, diff.before());
+            load(after, diff.after());
+            diff.getPairs();
+            return diff;
+        }
+
+        private void load(String fileName, LogEventListener listener) throws Exception {
+            List<LogEvent> events = Snapshot.load(fileName);
+            if (events == null) {
+                // only the compilations the diff keeps stay in memory
+                LogParser.parse(fileName, true, listener);
+                return;
+            }
+            for (LogEvent e : events) {
+                if (e instanceof Compilation) {
+                    listener.onCompilation((Compilation) e);
+                }
+            }
+        }
+
+        @Override
+        protected void done() {
+            try {
+                InlineTreeDiff diff = get();
+                List<InlineTreeDiff.Pair> changed = diff.getChangedPairs();
+                for (InlineTreeDiff.Pair pair : changed) {
+                    pairs.addElement(pair);
+                }
+                status.setText(diff.getPairs().size() + " compilations in both logs, " + changed.size()
+                        + " with different inlining, " + diff.getOnlyBefore() + " only in the first, "
+                        + diff.getOnlyAfter() + " only in the second");
+            } catch (InterruptedException | ExecutionException ex) {
+                status.setText("Unable to compare the logs");
+                JOptionPane.showMessageDialog(DiffFrame.this, before + " or " + after + " is not parsable",
+                        "Unable to compare", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+}
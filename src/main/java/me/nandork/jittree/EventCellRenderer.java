@@ -0,0 +1,43 @@
+package me.nandork.jittree;
+
+import com.sun.hotspot.tools.compiler.LogEvent;
+import com.sun.hotspot.tools.compiler.MakeNotEntrantEvent;
+import com.sun.hotspot.tools.compiler.NMethod;
+import com.sun.hotspot.tools.compiler.UncommonTrapEvent;
+
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.JList;
+import java.awt.Component;
+
+/**
+ * Shows an nmethod, uncommon trap or make not entrant event on one line.
+ */
+class EventCellRenderer extends DefaultListCellRenderer {
+
+    @Override
+    public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                  boolean isSelected, boolean cellHasFocus) {
+        return super.getListCellRendererComponent(list, describe((LogEvent) value), index, isSelected, cellHasFocus);
+    }
+
+    static String describe(LogEvent e) {
+        if (e instanceof NMethod) {
+            NMethod nm = (NMethod) e;
+            return String.format("%.3f  %s nmethod %s%d bytes", nm.getStart(), nm.getId(),
+                    nm.getCompiler() != null ? nm.getCompiler() + " " : "", nm.getSize());
+        } else if (e instanceof UncommonTrapEvent) {
+            UncommonTrapEvent trap = (UncommonTrapEvent) e;
+            String text = String.format("%.3f  %s uncommon trap %s %s", trap.getStart(), trap.getId(),
+                    trap.getReason(), trap.getAction());
+            if (trap.getFrameCount() > 0) {
+                text += " @" + trap.getFrameBci(0) + " " + trap.getFrameMethod(0);
+            }
+            return text;
+        } else if (e instanceof MakeNotEntrantEvent) {
+            MakeNotEntrantEvent mne = (MakeNotEntrantEvent) e;
+            return String.format("%.3f  %s %s", mne.getStart(), mne.getId(),
+                    mne.isZombie() ? "make_zombie" : "make_not_entrant");
+        }
+        return String.valueOf(e);
+    }
+}
@@ -0,0 +1,91 @@
+package me.nandork.jittree;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * A list with a gap at the last insertion point, so inserting at ascending
+ * positions only moves the elements between two consecutive inserts.  This
+ * is how a loading log fills the tree: every compiler thread's compilations
+ * are in order, they just have to be interleaved with the other threads'.
+ */
+class GapList<E> extends AbstractList<E> implements RandomAccess {
+
+    private Object[] elements;
+    private int gapStart;
+    private int gapEnd;
+
+    public GapList() {
+        this(16);
+    }
+
+    public GapList(int capacity) {
+        elements = new Object[Math.max(capacity, 1)];
+        gapEnd = elements.length;
+    }
+
+    public GapList(Collection<? extends E> c) {
+        this(c.size() * 2);
+        for (E e : c) {
+            add(e);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException(index + " of " + size());
+        }
+        return (E) elements[index < gapStart ? index : index + gapEnd - gapStart];
+    }
+
+    @Override
+    public int size() {
+        return elements.length - (gapEnd - gapStart);
+    }
+
+    @Override
+    public void add(int index, E element) {
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException(index + " of " + size());
+        }
+        if (gapStart == gapEnd) {
+            grow();
+        }
+        moveGap(index);
+        elements[gapStart++] = element;
+        modCount++;
+    }
+
+    /**
+     * Moves the gap to the index, the slots the elements were moved out of
+     * are cleared so they don't keep them alive.
+     */
+    private void moveGap(int index) {
+        if (index < gapStart) {
+            int n = gapStart - index;
+            System.arraycopy(elements, index, elements, gapEnd - n, n);
+            gapStart -= n;
+            gapEnd -= n;
+            Arrays.fill(elements, gapStart, Math.min(gapStart + n, gapEnd), null);
+        } else if (index > gapStart) {
+            int n = index - gapStart;
+            System.arraycopy(elements, gapEnd, elements, gapStart, n);
+            gapStart += n;
+            gapEnd += n;
+            Arrays.fill(elements, Math.max(gapEnd - n, gapStart), gapEnd, null);
+        }
+    }
+
+    private void grow() {
+        Object[] grown = new Object[elements.length * 2];
+        int tail = elements.length - gapEnd;
+        System.arraycopy(elements, 0, grown, 0, gapStart);
+        System.arraycopy(elements, gapEnd, grown, grown.length - tail, tail);
+        gapEnd = grown.length - tail;
+        elements = grown;
+    }
+}
@@ -0,0 +1,83 @@
+package me.nandork.jittree;
+
+import com.sun.hotspot.tools.compiler.CallSite;
+import com.sun.hotspot.tools.compiler.InlineFailures;
+
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.table.AbstractTableModel;
+import java.awt.BorderLayout;
+import java.util.List;
+
+/**
+ * Lists the failed inlines of the loaded log by caller, callee and reason,
+ * the hottest first.  The columns can be sorted by clicking on them.
+ */
+class InlineFailuresDialog extends JDialog {
+
+    private static final String[] COLUMNS = {"Sites", "Count", "Count * bytes", "Reason", "Caller", "Callee"};
+
+    public InlineFailuresDialog(JFrame owner, final List<InlineFailures.Row> rows) {
+        super(owner, "Inline failures");
+
+        JTable table = new JTable(new AbstractTableModel() {
+            @Override
+            public int getRowCount() {
+                return rows.size();
+            }
+
+            @Override
+            public int getColumnCount() {
+                return COLUMNS.length;
+            }
+
+            @Override
+            public String getColumnName(int column) {
+                return COLUMNS[column];
+            }
+
+            @Override
+            public Class<?> getColumnClass(int column) {
+                return column < 3 ? Long.class : String.class;
+            }
+
+            @Override
+            public Object getValueAt(int rowIndex, int column) {
+                InlineFailures.Row row = rows.get(rowIndex);
+                switch (column) {
+                    case 0:
+                        return (long) row.getSites();
+                    case 1:
+                        return row.getCount();
+                    case 2:
+                        return row.getWeight();
+                    case 3:
+                        return row.getReason().toString();
+                    case 4:
+                        return String.valueOf(row.getCaller());
+                    default:
+                        return row.getCallee().toString();
+                }
+            }
+        });
+        table.setAutoCreateRowSorter(true);
+        setLayout(new BorderLayout());
+        add(new JScrollPane(table), BorderLayout.CENTER);
+        setSize(900, 500);
+        setLocationRelativeTo(owner);
+    }
+
+    /**
+     * Collects the failures of the call sites, which can take a while for a
+     * big log, so it is meant to run off the EDT.
+     */
+    static List<InlineFailures.Row> rows(List<CallSite> callSites) {
+        InlineFailures failures = new InlineFailures();
+        for (CallSite callSite : callSites) {
+            failures.add(callSite.getTree());
+        }
+        return failures.getRows(InlineFailures.Order.COUNT);
+    }
+}
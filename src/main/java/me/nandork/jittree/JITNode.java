@@ -1,6 +1,7 @@
 package me.nandork.jittree;
 
 import com.sun.hotspot.tools.compiler.CallSite;
+import com.sun.hotspot.tools.compiler.Reason;
 
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.TreeNode;
@@ -11,46 +12,81 @@ import java.util.List;
 
 /**
  * This class is kinda immutable (despite of the super class), that's why a lot
- * of values are cached.
+ * of values are cached.  Children and the label are only created when Swing
+ * asks for them, so a node costs next to nothing until it is expanded.
  */
 class JITNode extends DefaultMutableTreeNode {
 
     private final CallSite callSite;
-    private final String asString;
+    private List<CallSite> callSites;
+    private String asString;
     private List<TreeNode> childNodes;
     private TreeNode[] pathCache;
 
-    public JITNode(CallSite callSite) {
-        this(callSite, null);
+    /**
+     * Creates a root node without a call site of its own.
+     */
+    public JITNode(String label, List<CallSite> callSites) {
+        this.callSite = null;
+        this.callSites = callSites;
+        asString = label;
     }
 
     public JITNode(CallSite callSite, JITNode parent) {
         this.callSite = callSite;
         setParent(parent);
-        List<CallSite> innerCallSites = callSite.getCalls();
-        innerCallSites = innerCallSites != null ? innerCallSites : Collections.<CallSite>emptyList();
-
-        String reason = callSite.getReason();
-        asString = callSite.getMethod().toString() + " " + (reason != null ? reason : "");
+    }
 
-        childNodes = new ArrayList<>();
-        for (CallSite cs : innerCallSites) {
-            childNodes.add(new JITNode(cs, this));
-        }
+    static String label(CallSite callSite) {
+        Reason reason = callSite.getReason();
+        return callSite.getMethod().toString() + " " + (reason != null ? reason : "");
     }
 
     public CallSite callSite() {
         return callSite;
     }
 
+    private List<TreeNode> childNodes() {
+        if (childNodes == null) {
+            List<CallSite> innerCallSites = callSite != null ? callSite.getCalls() : callSites;
+            if (innerCallSites == null) {
+                childNodes = Collections.emptyList();
+            } else {
+                childNodes = new ArrayList<>(innerCallSites.size());
+                for (CallSite cs : innerCallSites) {
+                    childNodes.add(new JITNode(cs, this));
+                }
+            }
+            callSites = null;
+        }
+        return childNodes;
+    }
+
+    /**
+     * Adds children for the call sites while a log is being loaded, the
+     * indexes are the (ascending) positions they end up at.
+     */
+    void insertChildren(int[] indexes, List<CallSite> newCallSites) {
+        if (!(childNodes() instanceof GapList)) {
+            childNodes = new GapList<>(childNodes);
+        }
+        for (int i = 0; i < indexes.length; i++) {
+            childNodes.add(indexes[i], new JITNode(newCallSites.get(i), this));
+        }
+    }
+
     @Override
     public TreeNode getChildAt(int childIndex) {
-        return childNodes.get(childIndex);
+        return childNodes().get(childIndex);
     }
 
     @Override
     public int getChildCount() {
-        return childNodes.size();
+        if (childNodes == null && callSite != null) {
+            // counting doesn't need the children themselves
+            return callSite.getTree().getChildCount(callSite.getNode());
+        }
+        return childNodes().size();
     }
 
     @Override
@@ -68,11 +104,14 @@ class JITNode extends DefaultMutableTreeNode {
 
     @Override
     public Enumeration children() {
-        return Collections.enumeration(childNodes);
+        return Collections.enumeration(childNodes());
     }
 
     @Override
     public String toString() {
+        if (asString == null) {
+            asString = label(callSite);
+        }
         return asString;
     }
 }
@@ -6,52 +6,97 @@ import javax.swing.*;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import javax.swing.tree.DefaultTreeModel;
-import javax.swing.tree.TreeNode;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 public class JITTree extends JFrame {
 
     private final JTextField searchField = new JTextField();
     private final JTree tree = new JTree(new Object[0]);
-    private List<JITNode> allNodes = Collections.emptyList();
+    private SearchModel searchModel = new SearchModel(Collections.<CallSite>emptyList());
     private JITTreeCellRenderer cellRenderer = new JITTreeCellRenderer();
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "JITTree search");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private Future<?> pendingSearch;
+    private int searchGeneration;
+    private final JProgressBar progressBar = new JProgressBar(0, 100);
+    private final JPanel progressPanel = new JPanel(new BorderLayout());
+    private final JButton cancelButton = new JButton("Cancel");
+    private Loader loader;
+    private String fileName;
+    /**
+     * The call sites of the compilations loaded so far.  Only grows while
+     * a log is loaded, a new list is used for every log.
+     */
+    private List<CallSite> loadedCallSites = new ArrayList<>();
+    /**
+     * The latest nmethods, uncommon traps and make not entrant events.  A
+     * live VM only writes these while it runs, its compilations come when
+     * it exits.
+     */
+    private final DefaultListModel<LogEvent> codeEvents = new DefaultListModel<>();
+    private final JList<LogEvent> codeEventList = new JList<>(codeEvents);
+
+    static final int MAX_CODE_EVENTS = 10000;
 
     public JITTree() {
         super("JIT Tree");
         tree.setCellRenderer(cellRenderer);
         setLayout(new BorderLayout());
         add(searchField, BorderLayout.NORTH);
-        add(new JScrollPane(tree), BorderLayout.CENTER);
+        codeEventList.setCellRenderer(new EventCellRenderer());
+        JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT,
+                new JScrollPane(tree), new JScrollPane(codeEventList));
+        split.setResizeWeight(0.8);
+        add(split, BorderLayout.CENTER);
+        add(buildProgressPanel(), BorderLayout.SOUTH);
         setJMenuBar(buildMenuBar());
         setSize(500, 500);
         setLocationRelativeTo(null);
         setDefaultCloseOperation(EXIT_ON_CLOSE);
 
-        searchField.getDocument().addDocumentListener(new DelayedDocumentListener(new DocumentListener() {
-            private Set<TreeNode> matchingNodes = new HashSet<>();
+        // a new keystroke makes the running search pointless right away,
+        // the next one only starts once typing pauses
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                cancelSearch();
+            }
 
-            private void search() {
-                String term = searchField.getText().toLowerCase();
-                if (term.isEmpty()) {
-                    cellRenderer.setMatchingNodes(null);
-                } else {
-                    matchingNodes.clear();
-                    for (JITNode node : allNodes) {
-                        if (node.toString().toLowerCase().contains(term)) {
-                            // adding the node's path to enable the... path
-                            Collections.addAll(matchingNodes, node.getPath());
-                        }
-                    }
-                    cellRenderer.setMatchingNodes(matchingNodes);
-                }
-                tree.treeDidChange();
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                cancelSearch();
             }
 
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+        searchField.getDocument().addDocumentListener(new DelayedDocumentListener(new DocumentListener() {
             @Override
             public void insertUpdate(DocumentEvent e) {
                 search();
@@ -68,48 +113,308 @@ public class JITTree extends JFrame {
         }));
     }
 
-    @SuppressWarnings("unchecked")
-    private void setRootNode(JITNode node) {
-        allNodes = Collections.list(node.breadthFirstEnumeration());
-        tree.setModel(new DefaultTreeModel(node));
-        // triggers an update event in the document to re-filter the nodes
-        searchField.setText(searchField.getText());
+    private void cancelSearch() {
+        searchGeneration++;
+        if (pendingSearch != null) {
+            pendingSearch.cancel(true);
+            pendingSearch = null;
+        }
     }
 
-    private JITNode parseFile(String fileName) throws Exception {
-        List<LogEvent> events = LogParser.parse(fileName, true);
-        Collections.sort(events, LogParser.sortByStart);
+    /**
+     * Starts searching for the search field's text on the search thread.
+     * Must be called on the EDT.
+     */
+    private void search() {
+        cancelSearch();
+        final String term = searchField.getText().toLowerCase();
+        if (term.isEmpty()) {
+            cellRenderer.setMatchingNodes(null);
+            tree.repaint();
+            return;
+        }
+        final SearchModel current = searchModel;
+        final int generation = searchGeneration;
+        // the index is rebuilt on the search thread when compilations were
+        // added since it was built
+        final List<CallSite> loaded = loadedCallSites;
+        final List<CallSite> callSites = current.size() != loaded.size() ? new ArrayList<>(loaded) : null;
+        pendingSearch = searchExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                SearchModel model = current;
+                if (callSites != null) {
+                    model = new SearchModel(callSites);
+                    installSearchModel(model, loaded);
+                }
+                SearchModel.Progress progress = new SearchModel.Progress() {
+                    @Override
+                    public void publish(SearchModel.Result partial) {
+                        showMatches(partial, generation);
+                    }
+                };
+                try {
+                    showMatches(model.search(term, progress), generation);
+                } catch (InterruptedException e) {
+                    // a newer search took over
+                }
+            }
+        });
+    }
 
-        List<CallSite> callSites = new ArrayList<>();
+    private void installSearchModel(final SearchModel model, final List<CallSite> loaded) {
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                if (loaded == loadedCallSites && model.size() > searchModel.size()) {
+                    searchModel = model;
+                }
+            }
+        });
+    }
 
-        for (LogEvent e : events) {
-            if (e instanceof Compilation) {
-                Compilation c = (Compilation) e;
-                CallSite cs = c.getCall();
-                cs.setMethod(c.getMethod());
-                callSites.add(cs);
+    private void showMatches(final SearchModel.Result matches, final int generation) {
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                if (generation == searchGeneration) {
+                    cellRenderer.setMatchingNodes(matches);
+                    tree.repaint();
+                }
             }
-        }
+        });
+    }
 
-        Method m = new Method();
-        m.setHolder("main");
-        m.setName("main");
+    public void loadFile(String fileName) {
+        load(fileName, false);
+    }
 
-        CallSite rootCallSite = new CallSite();
-        rootCallSite.setMethod(m);
-        rootCallSite.setCalls(callSites);
+    /**
+     * Loads a log that is still being written and keeps adding what gets
+     * appended to it until stopped.
+     */
+    public void followFile(String fileName) {
+        load(fileName, true);
+    }
 
-        return new JITNode(rootCallSite);
+    private void load(String fileName, boolean follow) {
+        if (loader != null) {
+            loader.cancel(true);
+        }
+        cancelSearch();
+        this.fileName = fileName;
+        searchModel = new SearchModel(Collections.<CallSite>emptyList());
+        loadedCallSites = new ArrayList<>();
+        codeEvents.clear();
+        cellRenderer.setMatchingNodes(null);
+
+        loader = new Loader(fileName, follow);
+        tree.setModel(loader.model);
+        progressBar.setValue(0);
+        progressBar.setIndeterminate(follow);
+        progressBar.setStringPainted(!follow);
+        cancelButton.setText(follow ? "Stop" : "Cancel");
+        progressPanel.setVisible(true);
+        loader.addPropertyChangeListener(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                if ("progress".equals(evt.getPropertyName())) {
+                    progressBar.setValue((Integer) evt.getNewValue());
+                }
+            }
+        });
+        loader.execute();
     }
 
-    public void loadFile(String fileName) {
-        try {
-            JITNode rootNode = parseFile(fileName);
-            setRootNode(rootNode);
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(null, fileName + " is not parsable",
-                    "Unable to load file", JOptionPane.ERROR_MESSAGE);
+    /**
+     * Parses a log in the background.  Compilations are added to the tree
+     * in start order as they are parsed, the other events to the event
+     * list.  When following, the parser waits at the end of the file for
+     * more to be appended until it is cancelled.
+     */
+    private class Loader extends SwingWorker<Void, LogEvent> {
+        private final String fileName;
+        private final boolean follow;
+        private final JITNode root = new JITNode("main::main", new ArrayList<CallSite>());
+        private final DefaultTreeModel model = new DefaultTreeModel(root);
+        /**
+         * The compilations in the tree, sorted by start.  Only used on the EDT.
+         */
+        private final List<Compilation> compilations = new GapList<>();
+
+        Loader(String fileName, boolean follow) {
+            this.fileName = fileName;
+            this.follow = follow;
+        }
+
+        @Override
+        protected Void doInBackground() throws Exception {
+            List<LogEvent> events = follow ? null : Snapshot.load(fileName);
+            if (events != null) {
+                for (LogEvent e : events) {
+                    publish(e);
+                }
+            } else {
+                events = parse();
+                if (!follow) {
+                    try {
+                        Snapshot.save(fileName, events);
+                    } catch (IOException e) {
+                        // the snapshot is only a cache
+                    }
+                }
+            }
+            setProgress(100);
+            return null;
         }
+
+        private List<LogEvent> parse() throws Exception {
+            File file = new File(fileName);
+            final long length = Math.max(1, file.length());
+            final List<LogEvent> events = new ArrayList<>();
+            InputStream source = follow ? new FollowInputStream(fileName) : new FileInputStream(file);
+            try (InputStream in = new ProgressInputStream(source) {
+                @Override
+                protected void progress(long bytesRead) throws IOException {
+                    if (isCancelled()) {
+                        throw new InterruptedIOException("loading " + fileName + " cancelled");
+                    }
+                    setProgress((int) Math.min(100, bytesRead * 100 / length));
+                }
+            }) {
+                // progress is measured on the file, compressed or not
+                InputStream log = follow ? in : LogParser.decompress(in);
+                LogParser.parse(new BufferedReader(new InputStreamReader(log)), true, new LogEventListener() {
+                    @Override
+                    public void onCompilation(Compilation compilation) {
+                        add(compilation);
+                    }
+
+                    @Override
+                    public void onNMethod(NMethod nmethod) {
+                        add(nmethod);
+                    }
+
+                    @Override
+                    public void onUncommonTrap(UncommonTrapEvent trap) {
+                        add(trap);
+                    }
+
+                    @Override
+                    public void onMakeNotEntrant(MakeNotEntrantEvent event) {
+                        add(event);
+                    }
+
+                    private void add(LogEvent e) {
+                        // only kept for the snapshot, which isn't saved
+                        // for a followed log
+                        if (!follow) {
+                            events.add(e);
+                        }
+                        publish(e);
+                    }
+                });
+            }
+            Collections.sort(events, LogParser.sortByStart);
+            return events;
+        }
+
+        @Override
+        protected void process(List<LogEvent> chunk) {
+            if (isCancelled()) {
+                return;
+            }
+            // the compiler threads are logged one after the other, so
+            // every chunk is an ascending run that goes in between the
+            // compilations of the threads logged before
+            List<Compilation> sorted = new ArrayList<>(chunk.size());
+            for (LogEvent e : chunk) {
+                if (e instanceof Compilation) {
+                    sorted.add((Compilation) e);
+                } else {
+                    codeEvents.addElement(e);
+                }
+            }
+            if (codeEvents.size() > MAX_CODE_EVENTS) {
+                codeEvents.removeRange(0, codeEvents.size() - MAX_CODE_EVENTS - 1);
+            }
+            if (follow && !codeEvents.isEmpty()) {
+                codeEventList.ensureIndexIsVisible(codeEvents.size() - 1);
+            }
+            Collections.sort(sorted, LogParser.sortByStart);
+            List<CallSite> callSites = new ArrayList<>(sorted.size());
+            int[] indexes = new int[sorted.size()];
+            int from = 0;
+            for (int i = 0; i < indexes.length; i++) {
+                Compilation c = sorted.get(i);
+                from = insertionPoint(c, from);
+                compilations.add(from, c);
+                indexes[i] = from++;
+                callSites.add(c.getCall());
+            }
+            loadedCallSites.addAll(callSites);
+            root.insertChildren(indexes, callSites);
+            model.nodesWereInserted(root, indexes);
+        }
+
+        /**
+         * The position after the last compilation that doesn't start after
+         * c, searching from the given index on.
+         */
+        private int insertionPoint(Compilation c, int from) {
+            int low = from;
+            int high = compilations.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (LogParser.sortByStart.compare(compilations.get(mid), c) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        @Override
+        protected void done() {
+            if (loader != this) {
+                return;
+            }
+            loader = null;
+            progressPanel.setVisible(false);
+            // when cancelled, what has been loaded so far stays
+            if (!isCancelled()) {
+                try {
+                    get();
+                } catch (InterruptedException | ExecutionException ex) {
+                    if (ex.getCause() instanceof FollowInputStream.RotatedException) {
+                        // a new VM is writing the log, what was loaded is of the old one
+                        followFile(fileName);
+                        return;
+                    }
+                    JOptionPane.showMessageDialog(null, fileName + " is not parsable",
+                            "Unable to load file", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+            // triggers an update event in the document to re-filter the nodes
+            searchField.setText(searchField.getText());
+        }
+    }
+
+    private JPanel buildProgressPanel() {
+        cancelButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (loader != null) {
+                    loader.cancel(true);
+                }
+            }
+        });
+        progressBar.setStringPainted(true);
+        progressPanel.add(progressBar, BorderLayout.CENTER);
+        progressPanel.add(cancelButton, BorderLayout.EAST);
+        progressPanel.setVisible(false);
+        return progressPanel;
     }
 
     private JMenuBar buildMenuBar() {
@@ -127,12 +432,67 @@ public class JITTree extends JFrame {
                 }
             }
         });
+        JMenuItem follow = new JMenuItem("Follow");
+        file.add(follow);
+        follow.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                JFileChooser chooser = new JFileChooser(".");
+                int state = chooser.showOpenDialog(JITTree.this);
+                if (state == JFileChooser.APPROVE_OPTION) {
+                    followFile(chooser.getSelectedFile().toString());
+                }
+            }
+        });
+        JMenuItem compare = new JMenuItem("Compare with...");
+        file.add(compare);
+        compare.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (fileName == null) {
+                    return;
+                }
+                JFileChooser chooser = new JFileChooser(".");
+                int state = chooser.showOpenDialog(JITTree.this);
+                if (state == JFileChooser.APPROVE_OPTION) {
+                    new DiffFrame(fileName, chooser.getSelectedFile().toString()).setVisible(true);
+                }
+            }
+        });
         if (isOSX()) {
             open.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_O, KeyEvent.META_MASK));
         } else {
             open.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_O, KeyEvent.CTRL_MASK));
         }
         menuBar.add(file);
+
+        JMenu view = new JMenu("View");
+        JMenuItem inlineFailures = new JMenuItem("Inline failures");
+        view.add(inlineFailures);
+        inlineFailures.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                // the call sites are copied, loading may still add to them
+                final List<CallSite> callSites = new ArrayList<>(loadedCallSites);
+                new SwingWorker<List<InlineFailures.Row>, Void>() {
+                    @Override
+                    protected List<InlineFailures.Row> doInBackground() {
+                        return InlineFailuresDialog.rows(callSites);
+                    }
+
+                    @Override
+                    protected void done() {
+                        try {
+                            new InlineFailuresDialog(JITTree.this, get()).setVisible(true);
+                        } catch (InterruptedException | ExecutionException ex) {
+                            JOptionPane.showMessageDialog(JITTree.this, "Unable to collect the inline failures",
+                                    "Inline failures", JOptionPane.ERROR_MESSAGE);
+                        }
+                    }
+                }.execute();
+            }
+        });
+        menuBar.add(view);
         return menuBar;
     }
 
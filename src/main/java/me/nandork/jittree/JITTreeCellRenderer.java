@@ -4,16 +4,14 @@ import com.sun.hotspot.tools.compiler.CallSite;
 
 import javax.swing.JTree;
 import javax.swing.tree.DefaultTreeCellRenderer;
-import javax.swing.tree.TreeNode;
 import java.awt.Color;
 import java.awt.Component;
-import java.util.Set;
 
 class JITTreeCellRenderer extends DefaultTreeCellRenderer {
 
-    private Set<TreeNode> matchingNodes;
+    private SearchModel.Result matchingNodes;
 
-    public void setMatchingNodes(Set<TreeNode> matchingNodes) {
+    public void setMatchingNodes(SearchModel.Result matchingNodes) {
         this.matchingNodes = matchingNodes;
     }
 
@@ -28,7 +26,9 @@ class JITTreeCellRenderer extends DefaultTreeCellRenderer {
         Component c = super.getTreeCellRendererComponent(tree, value, selected, expanded, leaf, row, hasFocus);
         JITNode node = (JITNode) value;
         CallSite callSite = node.callSite();
-        if (callSite.isIntrinsic()) {
+        if (callSite == null) {
+            // the root
+        } else if (callSite.isIntrinsic()) {
             c.setForeground(Color.blue);
         } else if (isNative(node)) {
             c.setForeground(Color.gray);
@@ -36,7 +36,8 @@ class JITTreeCellRenderer extends DefaultTreeCellRenderer {
             c.setForeground(Color.red);
         }
         if (matchingNodes != null) {
-            c.setEnabled(matchingNodes.contains(node));
+            // the root leads to every match
+            c.setEnabled(callSite == null ? !matchingNodes.isEmpty() : matchingNodes.contains(callSite));
         } else {
             c.setEnabled(true);
         }
@@ -44,6 +45,6 @@ class JITTreeCellRenderer extends DefaultTreeCellRenderer {
     }
 
     private boolean isNative(JITNode node) {
-        return node.toString().contains("(0 bytes)");
+        return node.callSite().getMethod().getBytes() == 0;
     }
 }
@@ -1,5 +1,6 @@
 package me.nandork.jittree;
 
+import javax.swing.JFrame;
 import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 
@@ -11,8 +12,16 @@ public class Main {
         SwingUtilities.invokeLater(new Runnable() {
             @Override
             public void run() {
+                if (args.length > 2 && args[0].equals("-d")) {
+                    DiffFrame diffFrame = new DiffFrame(args[1], args[2]);
+                    diffFrame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+                    diffFrame.setVisible(true);
+                    return;
+                }
                 JITTree jitTree = new JITTree();
-                if (args.length > 0) {
+                if (args.length > 1 && args[0].equals("-f")) {
+                    jitTree.followFile(args[1]);
+                } else if (args.length > 0) {
                     jitTree.loadFile(args[0]);
                 }
                 jitTree.setVisible(true);
@@ -0,0 +1,50 @@
+package me.nandork.jittree;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read through it and reports them after every read.
+ */
+abstract class ProgressInputStream extends FilterInputStream {
+
+    private long bytesRead;
+
+    public ProgressInputStream(InputStream in) {
+        super(in);
+    }
+
+    /**
+     * Called after every read, may throw to abort reading.
+     */
+    protected abstract void progress(long bytesRead) throws IOException;
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            bytesRead++;
+        }
+        progress(bytesRead);
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            bytesRead += n;
+        }
+        progress(bytesRead);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        bytesRead += skipped;
+        progress(bytesRead);
+        return skipped;
+    }
+}
@@ -0,0 +1,300 @@
+package me.nandork.jittree;
+
+import com.sun.hotspot.tools.compiler.CallSite;
+import com.sun.hotspot.tools.compiler.InlineTree;
+import com.sun.hotspot.tools.compiler.Reason;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Searches the inlining trees of a log directly instead of the Swing nodes,
+ * which are only created for the parts of the tree that have been expanded.
+ *
+ * Labels (method and inline reason) repeat a lot, so the index is built
+ * over the distinct labels: a trigram index narrows a query down to the
+ * labels that can contain it, and each label lists the nodes it appears on.
+ * A query that contains the previous one only has to look at the labels
+ * the previous one matched.
+ */
+class SearchModel {
+
+    private final List<InlineTree> trees = new ArrayList<>();
+    private final Map<InlineTree, Integer> treeIndexes = new IdentityHashMap<>();
+
+    private final List<String> labels = new ArrayList<>();
+    /**
+     * The nodes of label i are at occurrences[labelStart[i]..labelStart[i + 1]),
+     * as pairs of tree index and node.
+     */
+    private int[] labelStart;
+    private int[] occurrences;
+    private final Map<Long, int[]> postings = new HashMap<>();
+
+    private String lastTerm;
+    private int[] lastLabels;
+
+    public SearchModel(List<CallSite> roots) {
+        Map<Long, Integer> labelIds = new HashMap<>();
+        int total = 0;
+        for (CallSite root : roots) {
+            InlineTree tree = root.getTree();
+            treeIndexes.put(tree, trees.size());
+            trees.add(tree);
+            total += tree.size();
+        }
+
+        // label of every node, then the nodes grouped by label
+        int[] nodeLabels = new int[total];
+        int n = 0;
+        for (InlineTree tree : trees) {
+            for (int node = 0; node < tree.size(); node++) {
+                Reason reason = tree.getReason(node);
+                long key = ((long) tree.getMethodId(node) << 32) | (reason != null ? reason.getCode() + 1 : 0);
+                Integer id = labelIds.get(key);
+                if (id == null) {
+                    id = labels.size();
+                    labelIds.put(key, id);
+                    labels.add(JITNode.label(tree.getCallSite(node)).toLowerCase());
+                }
+                nodeLabels[n++] = id;
+            }
+        }
+        labelStart = new int[labels.size() + 1];
+        for (int label : nodeLabels) {
+            labelStart[label + 1] += 2;
+        }
+        for (int i = 1; i < labelStart.length; i++) {
+            labelStart[i] += labelStart[i - 1];
+        }
+        int[] fill = Arrays.copyOf(labelStart, labels.size());
+        occurrences = new int[total * 2];
+        n = 0;
+        for (int t = 0; t < trees.size(); t++) {
+            for (int node = 0; node < trees.get(t).size(); node++) {
+                int label = nodeLabels[n++];
+                occurrences[fill[label]] = t;
+                occurrences[fill[label] + 1] = node;
+                fill[label] += 2;
+            }
+        }
+
+        // posting lists are sorted, labels are added in order
+        Map<Long, IntList> lists = new HashMap<>();
+        Set<Long> seen = new HashSet<>();
+        for (int label = 0; label < labels.size(); label++) {
+            String s = labels.get(label);
+            seen.clear();
+            for (int i = 0; i + 3 <= s.length(); i++) {
+                Long trigram = trigram(s, i);
+                if (seen.add(trigram)) {
+                    IntList list = lists.get(trigram);
+                    if (list == null) {
+                        list = new IntList();
+                        lists.put(trigram, list);
+                    }
+                    list.add(label);
+                }
+            }
+        }
+        for (Map.Entry<Long, IntList> e : lists.entrySet()) {
+            postings.put(e.getKey(), e.getValue().toArray());
+        }
+    }
+
+    /**
+     * The number of inlining trees indexed.
+     */
+    public int size() {
+        return trees.size();
+    }
+
+    private static long trigram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    /**
+     * Receives the matches found so far while a search is running.
+     */
+    interface Progress {
+        void publish(Result partial);
+    }
+
+    /**
+     * How often a running search publishes its partial result.
+     */
+    static final long PUBLISH_NANOS = 16000000L;
+
+    /**
+     * Returns the call sites whose label contains the (lower case) term,
+     * together with all of their callers, so the paths leading to them
+     * stay visible.  Searches are meant to run one at a time off the EDT
+     * and stop with an InterruptedException when their thread is
+     * interrupted.  The partial results passed to progress are snapshots
+     * that only ever grow, so they can be shown while the search goes on.
+     */
+    public Result search(String term, Progress progress) throws InterruptedException {
+        int[] candidates;
+        if (lastTerm != null && term.contains(lastTerm)) {
+            candidates = lastLabels;
+        } else {
+            candidates = candidates(term);
+        }
+        IntList matching = new IntList();
+        for (int label : candidates) {
+            if (labels.get(label).contains(term)) {
+                matching.add(label);
+            }
+        }
+        checkInterrupted();
+        lastTerm = term;
+        lastLabels = matching.toArray();
+
+        Matches matches = new Matches();
+        long published = System.nanoTime();
+        for (int label : lastLabels) {
+            for (int i = labelStart[label]; i < labelStart[label + 1]; i += 2) {
+                matches.addPath(occurrences[i], occurrences[i + 1]);
+            }
+            if (progress != null && System.nanoTime() - published > PUBLISH_NANOS) {
+                checkInterrupted();
+                progress.publish(matches.snapshot());
+                published = System.nanoTime();
+            }
+        }
+        return matches.result();
+    }
+
+    private static void checkInterrupted() throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+
+    private int[] candidates(String term) {
+        if (term.length() < 3) {
+            int[] all = new int[labels.size()];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+        int[] candidates = null;
+        for (int i = 0; i + 3 <= term.length(); i++) {
+            int[] list = postings.get(trigram(term, i));
+            if (list == null) {
+                return new int[0];
+            }
+            candidates = candidates == null ? list : intersect(candidates, list);
+        }
+        return candidates;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int n = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /**
+     * Collects the matching nodes of a running search on the search thread.
+     */
+    private class Matches {
+        private final BitSet[] nodes = new BitSet[trees.size()];
+        private final BitSet[] published = new BitSet[trees.size()];
+        private final BitSet changed = new BitSet(trees.size());
+        private boolean empty = true;
+
+        void addPath(int tree, int node) {
+            BitSet bits = nodes[tree];
+            if (bits == null) {
+                bits = nodes[tree] = new BitSet(trees.get(tree).size());
+            }
+            InlineTree inlineTree = trees.get(tree);
+            for (; node >= 0 && !bits.get(node); node = inlineTree.getParent(node)) {
+                // stops where the rest of the path is already there
+                bits.set(node);
+            }
+            changed.set(tree);
+            empty = false;
+        }
+
+        /**
+         * A copy of what has been found so far.  Only the trees that
+         * changed since the last snapshot are copied, the others are
+         * shared with it.
+         */
+        Result snapshot() {
+            for (int tree = changed.nextSetBit(0); tree >= 0; tree = changed.nextSetBit(tree + 1)) {
+                published[tree] = (BitSet) nodes[tree].clone();
+            }
+            changed.clear();
+            return new Result(published.clone(), empty);
+        }
+
+        /**
+         * The final result, the bit sets are handed over as they are.
+         */
+        Result result() {
+            return new Result(nodes, empty);
+        }
+    }
+
+    /**
+     * The matching nodes of a search, one bit set per inlining tree.  A
+     * result is never changed once it has been created, so the EDT can
+     * read it while the search goes on.
+     */
+    class Result {
+        private final BitSet[] nodes;
+        private final boolean empty;
+
+        private Result(BitSet[] nodes, boolean empty) {
+            this.nodes = nodes;
+            this.empty = empty;
+        }
+
+        public boolean isEmpty() {
+            return empty;
+        }
+
+        public boolean contains(CallSite callSite) {
+            Integer tree = treeIndexes.get(callSite.getTree());
+            return tree != null && nodes[tree] != null && nodes[tree].get(callSite.getNode());
+        }
+    }
+
+    private static class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class CollapsedStacksTest {
+
+    // f inlines a and fails to inline b; a finishes at 4 nodes, f at 10
+    private static final String LOG =
+            "<compilation_log>\n"
+            + "<task compile_id='1' method='Foo f ()V' bytes='10' count='1' iicount='1' stamp='1.000'>\n"
+            + "<type id='619' name='void'/>\n"
+            + "<klass id='632' name='Foo' flags='1'/>\n"
+            + "<method id='700' holder='632' name='f' return='619' flags='1' bytes='10' iicount='1'/>\n"
+            + "<parse method='700' uses='1' stamp='1.000'>\n"
+            + "<bc code='184' bci='2'/>\n"
+            + "<method id='701' holder='632' name='a' return='619' flags='9' bytes='5' iicount='7'/>\n"
+            + "<call method='701' count='7' prof_factor='1' inline='1'/>\n"
+            + "<parse method='701' uses='7' stamp='1.000'>\n"
+            + "<parse_done nodes='4' memory='100' stamp='1.001'/>\n"
+            + "</parse>\n"
+            + "<bc code='184' bci='5'/>\n"
+            + "<method id='702' holder='632' name='b' return='619' flags='9' bytes='3' iicount='2'/>\n"
+            + "<call method='702' count='2' prof_factor='1' inline='1'/>\n"
+            + "<inline_fail reason='too big'/>\n"
+            + "<parse_done nodes='10' memory='100' stamp='1.003'/>\n"
+            + "</parse>\n"
+            + "<task_done success='1' nmsize='10' count='1' stamp='1.005'/>\n"
+            + "</task>\n"
+            + "</compilation_log>\n";
+
+    @Test
+    public void bytes() throws Exception {
+        assertEquals("Foo::f 10\nFoo::f;Foo::a 5\n", stacks(CollapsedStacks.Weight.BYTES));
+    }
+
+    @Test
+    public void nodes() throws Exception {
+        assertEquals("Foo::f 6\nFoo::f;Foo::a 4\n", stacks(CollapsedStacks.Weight.NODES));
+    }
+
+    @Test
+    public void time() throws Exception {
+        assertEquals("Foo::f 2000\nFoo::f;Foo::a 1000\n", stacks(CollapsedStacks.Weight.TIME));
+    }
+
+    @Test
+    public void count() throws Exception {
+        // the root has no call site
+        assertEquals("Foo::f;Foo::a 7\nFoo::f;Foo::b 2\n", stacks(CollapsedStacks.Weight.COUNT));
+    }
+
+    private static String stacks(CollapsedStacks.Weight weight) throws Exception {
+        CollapsedStacks stacks = new CollapsedStacks(weight);
+        LogParser.parse(new StringReader(LOG), false, stacks);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes, true, "UTF-8");
+        stacks.print(out);
+        return bytes.toString("UTF-8").replace(System.lineSeparator(), "\n");
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class FollowInputStreamTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test(timeout = 10000)
+    public void stopsAtTheEndOfACompleteLog() throws Exception {
+        LogParser.EventCollector collector = new LogParser.EventCollector();
+        LogParser.follow("hotspot.log", false, collector);
+        assertEquals(LogParser.parse("hotspot.log", false).size(), collector.events.size());
+    }
+
+    @Test(timeout = 10000)
+    public void rewrittenFileIsReported() throws Exception {
+        File file = folder.newFile("hotspot.log");
+        write(file, "<hotspot_log>\n<tty>\n");
+        try (FollowInputStream in = new FollowInputStream(file.getPath(), 10)) {
+            byte[] buffer = new byte[64];
+            assertEquals(20, in.read(buffer, 0, buffer.length));
+            write(file, "<hotspot");
+            in.read(buffer, 0, buffer.length);
+            fail("read past the end of a rewritten file");
+        } catch (FollowInputStream.RotatedException e) {
+            // expected
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void waitsForMoreUntilTheRootIsClosed() throws Exception {
+        File file = folder.newFile("hotspot.log");
+        write(file, "<hotspot_log>\n");
+        try (FollowInputStream in = new FollowInputStream(file.getPath(), 10)) {
+            byte[] buffer = new byte[64];
+            assertEquals(14, in.read(buffer, 0, buffer.length));
+            try (FileOutputStream out = new FileOutputStream(file, true)) {
+                out.write("</hotspot_log>\n".getBytes());
+            }
+            assertEquals(15, in.read(buffer, 0, buffer.length));
+            assertEquals(-1, in.read(buffer, 0, buffer.length));
+        }
+    }
+
+    private static void write(File file, String text) throws Exception {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(0);
+            raf.write(text.getBytes());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+import java.io.StringReader;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class InlineTreeDiffTest {
+
+    @Test
+    public void overloadsOfTheSameSizeArePairedByTheirSignature() throws Exception {
+        InlineTreeDiff diff = new InlineTreeDiff();
+        // f(int) inlines a, f(long) inlines b, in the second log f(long) is compiled first
+        LogParser.parse(new StringReader(log(task(1, "620", "a", null) + task(2, "621", "b", null))), false,
+                diff.before());
+        LogParser.parse(new StringReader(log(task(1, "621", "b", "too big") + task(2, "620", "a", null))), false,
+                diff.after());
+
+        assertEquals(2, diff.getPairs().size());
+        List<InlineTreeDiff.Pair> changed = diff.getChangedPairs();
+        assertEquals(1, changed.size());
+        assertEquals("Foo::f(J)V", changed.get(0).getKey());
+        assertEquals(1, changed.get(0).getChanges().size());
+        InlineTreeDiff.Change change = changed.get(0).getChanges().get(0);
+        assertEquals(InlineTreeDiff.Kind.FAILED, change.getKind());
+        assertEquals("b", change.getCallSite().getMethod().getName());
+    }
+
+    private static String log(String tasks) {
+        return "<compilation_log>\n" + tasks + "</compilation_log>\n";
+    }
+
+    private static String task(int id, String argument, String callee, String failure) {
+        double stamp = id;
+        return "<task compile_id='" + id + "' method='Foo f (" + (argument.equals("620") ? "I" : "J") + ")V' bytes='10' count='1' iicount='1' stamp='" + stamp + "'>\n"
+                + "<type id='619' name='void'/>\n"
+                + "<type id='620' name='int'/>\n"
+                + "<type id='621' name='long'/>\n"
+                + "<klass id='632' name='Foo' flags='1'/>\n"
+                + "<method id='700' holder='632' name='f' return='619' arguments='" + argument
+                + "' flags='1' bytes='10' iicount='1'/>\n"
+                + "<parse method='700' uses='1' stamp='" + stamp + "'>\n"
+                + "<bc code='184' bci='2'/>\n"
+                + "<method id='701' holder='632' name='" + callee + "' return='619' flags='9' bytes='5' iicount='1'/>\n"
+                + "<call method='701' count='1' prof_factor='1' inline='1'/>\n"
+                + (failure != null
+                   ? "<inline_fail reason='" + failure + "'/>\n"
+                   : "<parse method='701' uses='1' stamp='" + stamp + "'>\n"
+                     + "<parse_done nodes='5' memory='100' stamp='" + stamp + "'/>\n"
+                     + "</parse>\n")
+                + "<parse_done nodes='10' memory='100' stamp='" + stamp + "'/>\n"
+                + "</parse>\n"
+                + "<task_done success='1' nmsize='10' count='1' stamp='" + (stamp + 0.5) + "'/>\n"
+                + "</task>\n";
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class InlineTreeTest {
+
+    @Test
+    public void stampsAfterMonthsOfUptime() {
+        // 60 days, past what an int of milliseconds holds
+        double start = 60 * 24 * 3600.0;
+        InlineTree.Builder builder = new InlineTree.Builder();
+        builder.reset(start);
+        int call = builder.add(0, 4, -1, 1);
+        builder.add(0, 8, -1, 1);
+        builder.setTimeStamp(call, start + 0.012);
+        builder.setTimeStamp(0, start + 0.125);
+        InlineTree tree = builder.build(new SymbolTable());
+        assertEquals(start + 0.125, tree.getTimeStamp(0), 1e-9);
+        assertEquals(start + 0.012, tree.getTimeStamp(call), 1e-9);
+        assertEquals(0, tree.getTimeStamp(2), 0);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LogCleanupReaderTest {
+
+    // what LogCleanupReader did with regular expressions before it scanned
+    // the line buffer itself
+    private static final Pattern DUPLICATE = Pattern.compile(".+ compile_id='[0-9]+'.*( compile_id='[0-9]+)");
+    private static final Pattern COMPILER = Pattern.compile("' (C[12]) compile_id=");
+    private static final Pattern DESTROY_VM = Pattern.compile("'(destroy_vm)/");
+    private static final Pattern LINE = Pattern.compile("[^\r\n]*[\r\n]*");
+
+    private static final String[] PIECES = {
+        " compile_id='", "1", "42", "'", "' C1 compile_id=", "' C2 compile_id=", " C3", "C1", " ", "'",
+        "<task", " method='a b ()V'", " kind='osr'", "compile_id=", "'destroy_vm/", "destroy_vm", "/>", "x", "="
+    };
+    private static final String[] EOLS = {"\n", "\r\n", "\n\n", "\r"};
+
+    static String expected(String text) {
+        StringBuilder sb = new StringBuilder();
+        Matcher lines = LINE.matcher(text);
+        while (lines.find() && lines.end() > lines.start()) {
+            String s = lines.group();
+            Matcher m = COMPILER.matcher(s);
+            if (m.find()) {
+                s = s.substring(0, m.start(1)) + s.substring(m.end(1) + 1);
+            }
+            m = DUPLICATE.matcher(s);
+            if (m.lookingAt()) {
+                s = s.substring(0, m.start(1)) + s.substring(m.end(1) + 1);
+            }
+            m = DESTROY_VM.matcher(s);
+            if (m.find()) {
+                s = s.substring(0, m.start(1)) + s.substring(m.end(1));
+            }
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+
+    static String cleanup(String text, Random random) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] chunk = new char[64];
+        try (Reader reader = new LogCleanupReader(new StringReader(text))) {
+            int n;
+            while ((n = reader.read(chunk, 0, 1 + random.nextInt(chunk.length))) > 0) {
+                sb.append(chunk, 0, n);
+            }
+        }
+        return sb.toString();
+    }
+
+    static String randomLine(Random random) {
+        StringBuilder sb = new StringBuilder();
+        int pieces = random.nextInt(12);
+        for (int i = 0; i < pieces; i++) {
+            sb.append(PIECES[random.nextInt(PIECES.length)]);
+        }
+        return sb.append(EOLS[random.nextInt(EOLS.length)]).toString();
+    }
+
+    @Test
+    public void sameAsRegularExpressions() throws IOException {
+        Random random = new Random(1);
+        for (int round = 0; round < 200; round++) {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < 100; i++) {
+                text.append(randomLine(random));
+            }
+            assertEquals(expected(text.toString()), cleanup(text.toString(), random));
+        }
+    }
+
+    @Test
+    public void repairsOldLogLines() throws IOException {
+        String text = "<nmethod compile_id='7' C2 compile_id='7' address='0x1'/>\n"
+                + "<task compile_id='3' method='a b ()V' compile_id='3'>\n"
+                + "<destroy_vm stamp='1.0' 'destroy_vm/>\n";
+        assertEquals(expected(text), cleanup(text, new Random(1)));
+    }
+
+    @Test
+    public void longLines() throws IOException {
+        Random random = new Random(2);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append(PIECES[random.nextInt(PIECES.length)]);
+        }
+        text.append('\n');
+        assertEquals(expected(text.toString()), cleanup(text.toString(), random));
+    }
+}
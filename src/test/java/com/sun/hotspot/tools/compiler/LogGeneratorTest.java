@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LogGeneratorTest {
+
+    @Test
+    public void sameSeedSameLog() throws Exception {
+        assertEquals(generate(1, 500), generate(1, 500));
+        assertNotEquals(generate(1, 500), generate(2, 500));
+    }
+
+    @Test
+    public void logParses() throws Exception {
+        List<LogEvent> events = LogParser.parse(new StringReader(generate(3, 1000)), false);
+        int compilations = 0;
+        for (LogEvent e : events) {
+            if (e instanceof Compilation) {
+                compilations++;
+                assertTrue(((Compilation) e).hasEnd());
+            }
+        }
+        assertEquals(1000, compilations);
+        LogParserTest.checkAssociation(events);
+    }
+
+    @Test
+    public void sizeIsAboutRight() throws Exception {
+        LogGenerator generator = new LogGenerator(4, 500);
+        generator.setSize(4 << 20);
+        StringWriter out = new StringWriter();
+        generator.write(out);
+        assertEquals(4 << 20, out.getBuffer().length(), 0.1 * (4 << 20));
+    }
+
+    private static String generate(long seed, int compilations) throws Exception {
+        LogGenerator generator = new LogGenerator(seed, 500);
+        generator.setCompilations(compilations);
+        generator.setTrapRate(0.5);
+        StringWriter out = new StringWriter();
+        generator.write(out);
+        return out.toString();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LogParserTest {
+
+    private static final String LOG = "hotspot.log";
+
+    @Test
+    public void osrAndNormalCompilationsKeepTheirNMethods() throws Exception {
+        Map<String, Compilation> compilations = compilations(LogParser.parse(LOG, false));
+        // compile_id 1 is used by both a normal and an OSR compilation
+        assertEquals(0x10953a550L, compilations.get("1").getNMethod().getAddress());
+        assertEquals(0x109574a10L, compilations.get("1%").getNMethod().getAddress());
+    }
+
+    @Test
+    public void associatesNMethodsAndTraps() throws Exception {
+        checkAssociation(LogParser.parse(LOG, false));
+    }
+
+    /**
+     * Checks that every nmethod and uncommon trap of a compilation in the
+     * log is associated with that compilation, and only with it.
+     */
+    static void checkAssociation(List<LogEvent> events) {
+        Map<String, Compilation> compilations = compilations(events);
+        int nmethods = 0;
+        int traps = 0;
+        for (LogEvent e : events) {
+            if (e instanceof NMethod) {
+                NMethod nm = (NMethod) e;
+                Compilation c = compilations.get(nm.getId());
+                if (c != null) {
+                    assertSame(nm.getId(), c, nm.getCompilation());
+                    assertSame(nm.getId(), nm, c.getNMethod());
+                    nmethods++;
+                }
+            } else if (e instanceof UncommonTrapEvent) {
+                UncommonTrapEvent trap = (UncommonTrapEvent) e;
+                Compilation c = compilations.get(trap.getId());
+                if (c != null) {
+                    assertSame(trap.getId(), c, trap.getCompilation());
+                    traps++;
+                }
+            }
+        }
+        assertTrue(nmethods > 0);
+        assertTrue(traps > 0);
+    }
+
+    private static Map<String, Compilation> compilations(List<LogEvent> events) {
+        Map<String, Compilation> compilations = new HashMap<>();
+        for (LogEvent e : events) {
+            if (e instanceof Compilation) {
+                Compilation c = (Compilation) e;
+                String key = c.getId() + (c.isOsr() ? "%" : "");
+                assertNull(key, compilations.put(key, c));
+            }
+        }
+        return compilations;
+    }
+}
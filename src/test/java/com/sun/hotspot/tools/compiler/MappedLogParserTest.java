@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class MappedLogParserTest {
+
+    private static final String LOG = "hotspot.log";
+
+    @Test
+    public void sameEventsAsSax() throws Exception {
+        List<LogEvent> sax = LogParser.parse(LOG, false);
+        List<LogEvent> mapped = LogParser.parseMapped(LOG);
+        assertEquals(sax.size(), mapped.size());
+        for (int i = 0; i < sax.size(); i++) {
+            LogEvent expected = sax.get(i);
+            LogEvent actual = mapped.get(i);
+            assertEquals("event " + i, expected.getClass(), actual.getClass());
+            assertEquals("event " + i, expected.getStart(), actual.getStart(), 0);
+            assertEquals("event " + i, expected.getElapsedTime(), actual.getElapsedTime(), 0);
+            assertEquals("event " + i, print(expected), print(actual));
+        }
+    }
+
+    static String print(LogEvent e) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes);
+        e.print(out);
+        out.flush();
+        return bytes.toString();
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+public class ParallelGzipInputStreamTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void singleMember() throws Exception {
+        byte[] log = Files.readAllBytes(new File("hotspot.log").toPath());
+        File file = folder.newFile("single.gz");
+        try (OutputStream out = new FileOutputStream(file)) {
+            member(out, log, false);
+        }
+        check(file, log);
+    }
+
+    @Test
+    public void manyMembers() throws Exception {
+        // a log followed by random bytes with gzip headers in them, which
+        // mostly end up as they are in stored blocks
+        byte[] log = Files.readAllBytes(new File("hotspot.log").toPath());
+        Random r = new Random(1);
+        byte[] noise = new byte[1 << 20];
+        r.nextBytes(noise);
+        for (int i = 0; i + 10 < noise.length; i += 1000 + r.nextInt(5000)) {
+            noise[i] = 0x1f;
+            noise[i + 1] = (byte) 0x8b;
+            noise[i + 2] = 8;
+            noise[i + 3] = 0;
+        }
+        byte[] data = Arrays.copyOf(log, log.length + noise.length);
+        System.arraycopy(noise, 0, data, log.length, noise.length);
+
+        File file = folder.newFile("members.gz");
+        try (OutputStream out = new FileOutputStream(file)) {
+            int from = 0;
+            boolean named = false;
+            while (from < data.length) {
+                int to = Math.min(data.length, from + 1 + r.nextInt(200000));
+                member(out, Arrays.copyOfRange(data, from, to), named);
+                named = !named;
+                from = to;
+            }
+        }
+        check(file, data);
+    }
+
+    @Test
+    public void truncatedFile() throws Exception {
+        byte[] log = Files.readAllBytes(new File("hotspot.log").toPath());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        member(bytes, log, false);
+        File file = folder.newFile("truncated.gz");
+        Files.write(file.toPath(), Arrays.copyOf(bytes.toByteArray(), bytes.size() / 2));
+        try {
+            read(file, 2);
+            fail("read a truncated file");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    private static void check(File file, byte[] expected) throws IOException {
+        for (int parallelism : new int[] { 1, 2, 8 }) {
+            assertArrayEquals("parallelism " + parallelism, expected, read(file, parallelism));
+        }
+    }
+
+    private static byte[] read(File file, int parallelism) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Random r = new Random(parallelism);
+        try (InputStream in = new ParallelGzipInputStream(file.getPath(), parallelism)) {
+            byte[] buffer = new byte[100000];
+            while (true) {
+                if (r.nextInt(10) == 0) {
+                    int b = in.read();
+                    if (b < 0) {
+                        break;
+                    }
+                    out.write(b);
+                    continue;
+                }
+                int n = in.read(buffer, 0, 1 + r.nextInt(buffer.length));
+                if (n < 0) {
+                    break;
+                }
+                out.write(buffer, 0, n);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes the data as one gzip member, with a file name in the header
+     * if named, which GZIPOutputStream doesn't write.
+     */
+    private static void member(OutputStream out, byte[] data, boolean named) throws IOException {
+        if (!named) {
+            GZIPOutputStream gzip = new GZIPOutputStream(out);
+            gzip.write(data);
+            gzip.finish();
+            return;
+        }
+        out.write(new byte[] { 0x1f, (byte) 0x8b, 8, 8, 0, 0, 0, 0, 0, (byte) 0xff });
+        out.write("hotspot.log\0".getBytes());
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(data);
+        deflater.finish();
+        byte[] buffer = new byte[65536];
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        writeInt(out, (int) crc.getValue());
+        writeInt(out, data.length);
+    }
+
+    private static void writeInt(OutputStream out, int value) throws IOException {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+}
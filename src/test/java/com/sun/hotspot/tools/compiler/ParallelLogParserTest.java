@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+import java.io.File;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+
+public class ParallelLogParserTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sameEventsAsSerial() throws Exception {
+        check("hotspot.log", false);
+    }
+
+    @Test
+    public void sameEventsAsSerialWithCleanup() throws Exception {
+        check("hotspot.log", true);
+    }
+
+    @Test
+    public void sameEventsAsSerialInManyChunks() throws Exception {
+        LogGenerator generator = new LogGenerator(7, 500);
+        generator.setCompilations(2000);
+        generator.setTrapRate(0.5);
+        File log = new File(folder.getRoot(), "generated.log");
+        generator.write(log.getPath());
+        check(log.getPath(), false);
+    }
+
+    private static void check(String log, boolean cleanup) throws Exception {
+        List<LogEvent> serial = LogParser.parse(log, cleanup);
+        // small chunks, so even hotspot.log is cut into several
+        List<LogEvent> parallel = ParallelLogParser.parse(log, cleanup, 4, 1 << 16);
+        assertEquals(serial.size(), parallel.size());
+        for (int i = 0; i < serial.size(); i++) {
+            LogEvent expected = serial.get(i);
+            LogEvent actual = parallel.get(i);
+            assertEquals("event " + i, expected.getClass(), actual.getClass());
+            assertEquals("event " + i, expected.getStart(), actual.getStart(), 0);
+            assertEquals("event " + i, MappedLogParserTest.print(expected), MappedLogParserTest.print(actual));
+            Compilation a = expected.getCompilation();
+            Compilation b = actual.getCompilation();
+            assertEquals("event " + i, a == null, b == null);
+            if (a != null) {
+                assertEquals("event " + i, a.getId(), b.getId());
+                assertEquals("event " + i, a.isOsr(), b.isOsr());
+            }
+        }
+        LogParserTest.checkAssociation(parallel);
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class SnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void loadsWhatWasSaved() throws Exception {
+        String log = copyLog();
+        List<LogEvent> parsed = LogParser.parse(log, false);
+        Snapshot.save(log, parsed);
+        List<LogEvent> loaded = Snapshot.load(log);
+        assertNotNull(loaded);
+        assertEquals(parsed.size(), loaded.size());
+        for (int i = 0; i < parsed.size(); i++) {
+            LogEvent expected = parsed.get(i);
+            LogEvent actual = loaded.get(i);
+            assertEquals("event " + i, expected.getClass(), actual.getClass());
+            assertEquals("event " + i, expected.getStart(), actual.getStart(), 0);
+            assertEquals("event " + i, expected.getElapsedTime(), actual.getElapsedTime(), 0);
+            assertEquals("event " + i, MappedLogParserTest.print(expected), MappedLogParserTest.print(actual));
+            if (expected instanceof Compilation) {
+                assertSameCompilation((Compilation) expected, (Compilation) actual);
+            } else if (expected.getCompilation() != null) {
+                assertEquals("event " + i, expected.getCompilation().getId(), actual.getCompilation().getId());
+                assertEquals("event " + i, expected.getCompilation().getStart(), actual.getCompilation().getStart(), 0);
+            } else {
+                assertNull("event " + i, actual.getCompilation());
+            }
+        }
+        LogParserTest.checkAssociation(loaded);
+    }
+
+    @Test
+    public void damagedSnapshotIsIgnored() throws Exception {
+        String log = copyLog();
+        Snapshot.save(log, LogParser.parse(log, false));
+        File file = new File(log + Snapshot.SUFFIX);
+        byte[] saved = Files.readAllBytes(file.toPath());
+        // past magic, version and the log's stamp
+        int header = 4 + 4 + 3 * 8;
+
+        // a billion strings
+        byte[] damaged = saved.clone();
+        damaged[header] = (byte) 0x80;
+        damaged[header + 1] = (byte) 0x80;
+        damaged[header + 2] = (byte) 0x80;
+        damaged[header + 3] = (byte) 0x80;
+        damaged[header + 4] = (byte) 0x08;
+        write(file, damaged);
+        assertNull(Snapshot.load(log));
+
+        Random r = new Random(1);
+        for (int i = 0; i < 200; i++) {
+            damaged = saved.clone();
+            int at = header + r.nextInt(Math.min(256, damaged.length - header));
+            damaged[at] = (byte) (r.nextBoolean() ? 0xff : r.nextInt());
+            write(file, damaged);
+            // the log's stamp doesn't cover the snapshot, so this loads
+            // garbage or nothing, but must not throw
+            Snapshot.load(log);
+        }
+    }
+
+    private static void write(File file, byte[] bytes) throws Exception {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(0);
+            raf.write(bytes);
+        }
+    }
+
+    private static void assertSameCompilation(Compilation expected, Compilation actual) {
+        String id = "compilation " + expected.getId();
+        assertEquals(id, expected.isOsr(), actual.isOsr());
+        assertEquals(id, expected.getEnd(), actual.getEnd(), 0);
+        assertEquals(id, expected.getPhases().size(), actual.getPhases().size());
+        if (expected.getNMethod() != null) {
+            assertEquals(id, expected.getNMethod().getAddress(), actual.getNMethod().getAddress());
+            assertSame(id, actual, actual.getNMethod().getCompilation());
+        }
+        InlineTree a = expected.getInlineTree();
+        InlineTree b = actual.getInlineTree();
+        assertEquals(id, a.size(), b.size());
+        for (int node = 0; node < a.size(); node++) {
+            assertEquals(id, a.getTimeStamp(node), b.getTimeStamp(node), 0);
+            assertEquals(id, a.getEndNodes(node), b.getEndNodes(node));
+            assertEquals(id, a.getReceiver(node), b.getReceiver(node));
+            assertEquals(id, a.getCallSite(node).getIICount(), b.getCallSite(node).getIICount());
+        }
+    }
+
+    private String copyLog() throws Exception {
+        File log = new File(folder.getRoot(), "hotspot.log");
+        Files.copy(new File("hotspot.log").toPath(), log.toPath());
+        return log.getPath();
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2009, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.sun.hotspot.tools.compiler;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class SymbolTableTest {
+
+    @Test
+    public void methodsOfAnotherLogKeepTheirBytecode() {
+        SymbolTable first = new SymbolTable();
+        SymbolTable second = new SymbolTable();
+        Method a = first.intern(method(new String("hashCode"), 55));
+        Method b = second.intern(method(new String("hashCode"), 49));
+        assertNotSame(a, b);
+        assertEquals(55, a.getBytes());
+        assertEquals(49, b.getBytes());
+        assertSame(a, first.intern(method("hashCode", 49)));
+        // names are still shared
+        assertSame(a.getName(), b.getName());
+    }
+
+    @Test
+    public void methodElementCompletesTrapFrame() {
+        SymbolTable symbols = new SymbolTable();
+        Method frame = method("hashCode", 55);
+        frame.setPartial(true);
+        Method m = symbols.intern(frame);
+        Method full = method("hashCode", 55);
+        full.setFlags(Constants.JVM_ACC_SYNCHRONIZED);
+        assertSame(m, symbols.intern(full));
+        assertFalse(m.isPartial());
+        assertEquals(Constants.JVM_ACC_SYNCHRONIZED, m.getFlags());
+    }
+
+    private static Method method(String name, int bytes) {
+        Method m = new Method();
+        m.setHolder("java/lang/String");
+        m.setName(name);
+        m.setArguments("");
+        m.setReturnType("int");
+        m.setBytes(bytes);
+        return m;
+    }
+}